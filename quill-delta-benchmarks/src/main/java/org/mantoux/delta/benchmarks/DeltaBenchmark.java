@@ -0,0 +1,156 @@
+package org.mantoux.delta.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.mantoux.delta.Delta;
+import org.mantoux.delta.DeltaDocument;
+import org.mantoux.delta.Op;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of the core {@link Delta} operations over generated documents.
+ *
+ * <p>Run with {@code java -jar target/benchmarks.jar -prof gc} to also report allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeltaBenchmark {
+
+  /** Length of the document, from 1 KB to 10 MB. */
+  @Param({"1024", "102400", "1048576", "10485760"})
+  public int size;
+
+  /** Average length of a text insert, the document op count is roughly {@code size / opLength}. */
+  @Param({"16", "256"})
+  public int opLength;
+
+  /** Ratio of ops carrying attributes. */
+  @Param({"0.2"})
+  public double attributeDensity;
+
+  /** Number of insert, delete or format ops in the change applied to the document. */
+  @Param({"100"})
+  public int changeOps;
+
+  private List<Op> ops;
+  private Delta document;
+  private Delta change;
+  private Delta concurrentChange;
+  private Delta tail;
+  private DeltaDocument deltaDocument;
+  private Delta inverse;
+  private String typed;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    final DocumentGenerator generator = new DocumentGenerator(42, opLength, attributeDensity);
+    ops = generator.documentOps(size);
+    document = new Delta();
+    ops.forEach(document::push);
+    change = generator.change(document.length(), changeOps);
+    concurrentChange = generator.change(document.length(), changeOps);
+    tail = generator.document(Math.max(2, size / 10));
+    deltaDocument = new DeltaDocument(document);
+    inverse = change.invert(document);
+    final StringBuilder text = new StringBuilder();
+    for (Op op : ops) {
+      if (text.length() >= 100_000) break;
+      if (op.isTextInsert()) text.append(op.argAsString());
+    }
+    typed = text.toString();
+  }
+
+  @Benchmark
+  public Delta compose() {
+    return document.compose(change);
+  }
+
+  @Benchmark
+  public Delta parallelCompose() {
+    return document.parallelCompose(change);
+  }
+
+  /** Applies the change and its inverse, leaving the document unchanged between invocations. */
+  @Benchmark
+  public DeltaDocument documentApply() {
+    return deltaDocument.apply(change).apply(inverse);
+  }
+
+  @Benchmark
+  public Delta slice() {
+    final int length = document.length();
+    return document.slice(length / 2, length / 2 + length / 4);
+  }
+
+  @Benchmark
+  public Delta invert() {
+    return change.invert(document);
+  }
+
+  @Benchmark
+  public Delta transform() {
+    return change.transform(concurrentChange, true);
+  }
+
+  @Benchmark
+  public Delta push() {
+    final Delta delta = new Delta();
+    for (Op op : ops) delta.push(op);
+    return delta;
+  }
+
+  /** Replays typing: one push per character of the first text inserts. */
+  @Benchmark
+  public Delta typing() {
+    final Delta delta = new Delta();
+    for (int i = 0; i < typed.length(); i++) delta.insert(String.valueOf(typed.charAt(i)));
+    return delta;
+  }
+
+  @Benchmark
+  public Delta typingBuilder() {
+    final Delta.Builder builder = Delta.builder();
+    for (int i = 0; i < typed.length(); i++) builder.insert(String.valueOf(typed.charAt(i)));
+    return builder.build();
+  }
+
+  @Benchmark
+  public Delta concat() {
+    return document.concat(tail);
+  }
+
+  @Benchmark
+  public void eachLine(Blackhole blackhole) {
+    document.eachLine(
+        (line, attributes) -> {
+          blackhole.consume(line);
+          return true;
+        });
+  }
+
+  @Benchmark
+  public void lines(Blackhole blackhole) {
+    document.lines().forEach(line -> blackhole.consume(line.delta().toDelta()));
+  }
+
+  @Benchmark
+  public long linesParallel() {
+    return document.lines().parallel().mapToInt(line -> line.delta().toDelta().size()).sum();
+  }
+}
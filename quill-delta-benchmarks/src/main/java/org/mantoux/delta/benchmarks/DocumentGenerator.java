@@ -0,0 +1,116 @@
+package org.mantoux.delta.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.mantoux.delta.AttributeMap;
+import org.mantoux.delta.Delta;
+import org.mantoux.delta.Op;
+
+/** Generates reproducible documents and changes for the benchmarks. */
+public class DocumentGenerator {
+
+  private static final List<AttributeMap> INLINE_ATTRIBUTES =
+      List.of(
+          AttributeMap.of("bold", true),
+          AttributeMap.of("italic", true),
+          AttributeMap.of("bold", true, "italic", true),
+          AttributeMap.of("color", "#cc0000"),
+          AttributeMap.of("link", "https://quilljs.com"));
+
+  private static final List<AttributeMap> BLOCK_ATTRIBUTES =
+      List.of(
+          AttributeMap.of("header", 1),
+          AttributeMap.of("list", "bullet"),
+          AttributeMap.of("align", "center"));
+
+  private final SplittableRandom random;
+  private final int averageOpLength;
+  private final double attributeDensity;
+
+  /**
+   * @param seed seed of the generator, the same seed always yields the same documents
+   * @param averageOpLength average length of a text insert, controls the op count of a document
+   * @param attributeDensity ratio of ops carrying attributes, between 0 and 1
+   */
+  public DocumentGenerator(long seed, int averageOpLength, double attributeDensity) {
+    this.random = new SplittableRandom(seed);
+    this.averageOpLength = averageOpLength;
+    this.attributeDensity = attributeDensity;
+  }
+
+  /**
+   * @param size length of the document, in characters
+   * @return the ops of a document, ending with a new line
+   */
+  public List<Op> documentOps(int size) {
+    final List<Op> ops = new ArrayList<>();
+    int length = 0;
+    while (length < size - 1) {
+      final int opLength = Math.min(1 + random.nextInt(2 * averageOpLength), size - 1 - length);
+      ops.add(Op.insert(text(opLength), inlineAttributes()));
+      length += opLength;
+      if (random.nextInt(4) == 0 && length < size - 1) {
+        ops.add(Op.insert("\n", blockAttributes()));
+        length += 1;
+      }
+    }
+    ops.add(Op.insert("\n"));
+    return ops;
+  }
+
+  public Delta document(int size) {
+    final Delta document = new Delta();
+    documentOps(size).forEach(document::push);
+    return document;
+  }
+
+  /**
+   * @param length length of the document the change applies to
+   * @param opCount number of insert, delete or format ops in the change
+   * @return a change spread evenly over the document
+   */
+  public Delta change(int length, int opCount) {
+    final Delta change = new Delta();
+    final int gap = Math.max(1, length / (opCount + 1));
+    int index = 0;
+    for (int i = 0; i < opCount; i++) {
+      final int retain = 1 + random.nextInt(gap);
+      if (index + retain + gap >= length) break;
+      change.retain(retain);
+      index += retain;
+      final int opLength = 1 + random.nextInt(Math.max(1, Math.min(gap, 2 * averageOpLength)));
+      switch (random.nextInt(3)) {
+        case 0 -> change.insert(text(opLength), inlineAttributes());
+        case 1 -> {
+          change.delete(opLength);
+          index += opLength;
+        }
+        default -> {
+          change.retain(opLength, INLINE_ATTRIBUTES.get(random.nextInt(INLINE_ATTRIBUTES.size())));
+          index += opLength;
+        }
+      }
+    }
+    return change;
+  }
+
+  private AttributeMap inlineAttributes() {
+    if (random.nextDouble() >= attributeDensity) return null;
+    return INLINE_ATTRIBUTES.get(random.nextInt(INLINE_ATTRIBUTES.size()));
+  }
+
+  private AttributeMap blockAttributes() {
+    if (random.nextDouble() >= attributeDensity) return null;
+    return BLOCK_ATTRIBUTES.get(random.nextInt(BLOCK_ATTRIBUTES.size()));
+  }
+
+  private String text(int length) {
+    final char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      final int c = random.nextInt(27);
+      chars[i] = c == 26 ? ' ' : (char) ('a' + c);
+    }
+    return new String(chars);
+  }
+}
@@ -0,0 +1,68 @@
+package org.mantoux.delta.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.mantoux.delta.Delta;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of rebuilding a document from its revision history. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HistoryBenchmark {
+
+  /** Length of the initial document. */
+  @Param({"10240"})
+  public int size;
+
+  /** Number of revisions applied to the initial document. */
+  @Param({"1000", "10000"})
+  public int revisions;
+
+  /** Number of insert, delete or format ops in each revision. */
+  @Param({"5"})
+  public int changeOps;
+
+  private List<Delta> history;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    final DocumentGenerator generator = new DocumentGenerator(42, 16, 0.2);
+    history = new ArrayList<>();
+    final Delta document = generator.document(size);
+    history.add(document);
+    int length = document.length();
+    for (int i = 0; i < revisions; i++) {
+      final Delta change = generator.change(length, changeOps);
+      history.add(change);
+      length += change.changeLength();
+    }
+  }
+
+  @Benchmark
+  public Delta composeSequentially() {
+    Delta document = history.getFirst();
+    for (int i = 1; i < history.size(); i++) document = document.compose(history.get(i));
+    return document;
+  }
+
+  @Benchmark
+  public Delta composeAll() {
+    return Delta.composeAll(history);
+  }
+}
@@ -0,0 +1,71 @@
+package org.mantoux.delta.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.mantoux.delta.Delta;
+import org.mantoux.delta.DeltaCodec;
+import org.mantoux.delta.DeltaJson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of the {@link Delta} wire formats. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+  /** Length of the document the change applies to. */
+  @Param({"102400"})
+  public int size;
+
+  /** Number of insert, delete or format ops in the change. */
+  @Param({"10", "1000"})
+  public int changeOps;
+
+  private Delta change;
+  private byte[] json;
+  private ByteBuffer binary;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    change = new DocumentGenerator(42, 16, 0.2).change(size, changeOps);
+    json = DeltaJson.toJsonBytes(change);
+    binary = new DeltaCodec.Encoder().encode(change);
+  }
+
+  @Benchmark
+  public byte[] writeJson() throws JsonProcessingException {
+    return DeltaJson.toJsonBytes(change);
+  }
+
+  @Benchmark
+  public Delta readJson() throws IOException {
+    return DeltaJson.readDelta(json);
+  }
+
+  /** Encodes with a new stream, the attributes are written rather than referred to. */
+  @Benchmark
+  public ByteBuffer writeBinary() throws IOException {
+    return new DeltaCodec.Encoder().encode(change);
+  }
+
+  @Benchmark
+  public Delta readBinary() throws IOException {
+    return new DeltaCodec.Decoder().decode(binary.duplicate());
+  }
+}
@@ -68,23 +68,29 @@ public class AttributeMap extends HashMap<String, Object> {
    * @return the composed attribute map
    */
   static AttributeMap compose(AttributeMap a, AttributeMap b, boolean keepNull) {
-    AttributeMap _a = a != null ? a : new AttributeMap();
-    AttributeMap _b = b != null ? b : new AttributeMap();
-    AttributeMap attributes = new AttributeMap(_b);
-    if (!keepNull) {
-      Set<String> keysToRemove = new HashSet<>();
-      attributes.forEach(
+    final boolean emptyA = a == null || a.isEmpty();
+    final boolean emptyB = b == null || b.isEmpty();
+    // Immutable inputs can be shared as is when they already are the result
+    if (emptyB) {
+      if (emptyA) return null;
+      if (a instanceof ImmutableAttributeMap && !a.containsValue(null)) return a;
+    } else if (emptyA && b instanceof ImmutableAttributeMap && (keepNull || !b.containsValue(null)))
+      return b;
+
+    AttributeMap attributes = new AttributeMap();
+    if (!emptyB) {
+      b.forEach(
           (key, value) -> {
-            if (value == null) keysToRemove.add(key);
+            if (keepNull || value != null) attributes.put(key, value);
           });
-      keysToRemove.forEach(attributes::remove);
     }
-
-    for (String key : _a.keySet()) {
-      if (_a.get(key) != null && !_b.containsKey(key)) attributes.put(key, _a.get(key));
+    if (!emptyA) {
+      a.forEach(
+          (key, value) -> {
+            if (value != null && (emptyB || !b.containsKey(key))) attributes.put(key, value);
+          });
     }
-
-    return attributes.isEmpty() ? null : new AttributeMap(attributes);
+    return attributes.isEmpty() ? null : attributes;
   }
 
   static AttributeMap compose(AttributeMap a, AttributeMap b) {
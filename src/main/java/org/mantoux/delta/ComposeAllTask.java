@@ -0,0 +1,40 @@
+package org.mantoux.delta;
+
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Composes a range of deltas as a balanced tree of pairwise compositions, forking the halves of
+ * large ranges.
+ */
+class ComposeAllTask extends RecursiveTask<Delta> {
+
+  // Below this many deltas a range is reduced on the current thread
+  static final int SEQUENTIAL_THRESHOLD = 64;
+
+  private final List<Delta> deltas;
+  private final int from;
+  private final int to;
+
+  ComposeAllTask(List<Delta> deltas, int from, int to) {
+    this.deltas = deltas;
+    this.from = from;
+    this.to = to;
+  }
+
+  @Override
+  protected Delta compute() {
+    if (to - from <= SEQUENTIAL_THRESHOLD) return composeRange(deltas, from, to);
+    final int middle = (from + to) >>> 1;
+    final ComposeAllTask left = new ComposeAllTask(deltas, from, middle);
+    left.fork();
+    final Delta right = new ComposeAllTask(deltas, middle, to).compute();
+    return left.join().compose(right);
+  }
+
+  static Delta composeRange(List<Delta> deltas, int from, int to) {
+    if (to - from == 1) return deltas.get(from);
+    final int middle = (from + to) >>> 1;
+    return composeRange(deltas, from, middle).compose(composeRange(deltas, middle, to));
+  }
+}
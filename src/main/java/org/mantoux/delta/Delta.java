@@ -1,42 +1,232 @@
 package org.mantoux.delta;
 
 import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL;
-import static java.util.stream.Collectors.toList;
 import static org.mantoux.delta.Op.Type.DELETE;
 import static org.mantoux.delta.Op.Type.INSERT;
+import static org.mantoux.delta.Op.Type.RETAIN;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @JsonInclude(value = NON_NULL)
 public class Delta extends ArrayList<Op> {
 
+  // Running totals of op lengths by type, kept up to date by every mutator so that reading them
+  // never writes, subList() views included as they go through the mutators of this delta
+  private int insertLength;
+  private int retainLength;
+  private int deleteLength;
+
+  // Start position of every op, built on first use by slice(). A holder created in one piece,
+  // so that concurrent readers of an unchanging delta at worst build it twice.
+  private transient OffsetIndex offsetIndex;
+
   public Delta(Collection<Op> other) {
     super(other);
+    for (int i = 0; i < size(); i++) count(get(i), 1);
   }
 
   public Delta() {
     super();
   }
 
+  /**
+   * @return a builder producing the same delta as {@link #push(Op)} calls would, without copying
+   *     the text at every merged insert
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
   @Override
   public Iterator iterator() {
     return new Iterator(this);
   }
 
-  private void insertFirst(Op element) {
-    add(0, element);
+  @Override
+  public boolean add(Op op) {
+    super.add(op);
+    count(op, 1);
+    return true;
+  }
+
+  @Override
+  public void add(int index, Op op) {
+    super.add(index, op);
+    count(op, 1);
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends Op> ops) {
+    // Counted once added, ops may be this delta or a view of it
+    final int size = size();
+    final boolean changed = super.addAll(ops);
+    for (int i = size; i < size(); i++) count(get(i), 1);
+    return changed;
+  }
+
+  @Override
+  public boolean addAll(int index, Collection<? extends Op> ops) {
+    final int size = size();
+    final boolean changed = super.addAll(index, ops);
+    for (int i = index; i < index + size() - size; i++) count(get(i), 1);
+    return changed;
+  }
+
+  @Override
+  public Op set(int index, Op op) {
+    offsetIndex = null;
+    final Op previous = super.set(index, op);
+    count(previous, -1);
+    count(op, 1);
+    return previous;
+  }
+
+  @Override
+  public Op remove(int index) {
+    final Op removed = super.remove(index);
+    count(removed, -1);
+    return removed;
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    final int index = indexOf(o);
+    if (index < 0) return false;
+    remove(index);
+    return true;
+  }
+
+  // ArrayList removes the first and last elements without going through remove(int)
+  @Override
+  public Op removeFirst() {
+    if (isEmpty()) throw new NoSuchElementException();
+    return remove(0);
+  }
+
+  @Override
+  public Op removeLast() {
+    if (isEmpty()) throw new NoSuchElementException();
+    return remove(size() - 1);
+  }
+
+  @Override
+  protected void removeRange(int fromIndex, int toIndex) {
+    for (int i = fromIndex; i < toIndex; i++) count(get(i), -1);
+    super.removeRange(fromIndex, toIndex);
+  }
+
+  @Override
+  public void clear() {
+    super.clear();
+    recount();
+  }
+
+  @Override
+  public boolean removeIf(Predicate<? super Op> filter) {
+    final boolean changed = super.removeIf(filter);
+    recount();
+    return changed;
+  }
+
+  @Override
+  public boolean removeAll(Collection<?> c) {
+    final boolean changed = super.removeAll(c);
+    recount();
+    return changed;
+  }
+
+  @Override
+  public boolean retainAll(Collection<?> c) {
+    final boolean changed = super.retainAll(c);
+    recount();
+    return changed;
+  }
+
+  @Override
+  public void replaceAll(UnaryOperator<Op> operator) {
+    offsetIndex = null;
+    super.replaceAll(operator);
+    recount();
+  }
+
+  // ArrayList's own views write to its array directly, this one goes through the mutators above
+  @Override
+  public List<Op> subList(int fromIndex, int toIndex) {
+    Objects.checkFromToIndex(fromIndex, toIndex, size());
+    return new SubList(this, fromIndex, toIndex);
+  }
+
+  // Adds sign times the length of op to the totals
+  private void count(Op op, int sign) {
+    switch (op.type()) {
+      case INSERT -> insertLength += sign * op.length();
+      case RETAIN -> retainLength += sign * op.length();
+      case DELETE -> deleteLength += sign * op.length();
+    }
+  }
+
+  private void recount() {
+    insertLength = 0;
+    retainLength = 0;
+    deleteLength = 0;
+    for (int i = 0; i < size(); i++) count(get(i), 1);
+  }
+
+  /**
+   * @param position a position in this delta
+   * @return the index of the op covering {@code position}, {@link #size()} past the end
+   */
+  int opIndexAt(int position) {
+    if (position >= length()) return size();
+    final int found = Arrays.binarySearch(offsets(), 0, size(), position);
+    return found >= 0 ? found : -found - 2;
+  }
+
+  // Iterator starting at position, found by binary search on the op offsets
+  Iterator iteratorAt(int position) {
+    final int opIndex = opIndexAt(position);
+    return new Iterator(this, opIndex, opIndex < size() ? position - opStart(opIndex) : 0);
+  }
+
+  // Position of the first character of the op at index
+  int opStart(int index) {
+    return offsets()[index];
+  }
+
+  // Start positions of the ops if already indexed, null rather than building the index
+  private int[] indexedOffsets() {
+    final OffsetIndex index = offsetIndex;
+    return index != null && index.modCount() == modCount ? index.offsets() : null;
+  }
+
+  // Start positions of the ops, valid until the next change of this delta
+  private int[] offsets() {
+    final OffsetIndex index = offsetIndex;
+    if (index != null && index.modCount() == modCount) return index.offsets();
+    final int[] offsets = new int[size()];
+    int position = 0;
+    for (int i = 0; i < offsets.length; i++) {
+      offsets[i] = position;
+      position += get(i).length();
+    }
+    offsetIndex = new OffsetIndex(modCount, offsets);
+    return offsets;
   }
 
+  private record OffsetIndex(int modCount, int[] offsets) {}
+
   public Delta filter(Predicate<Op> predicate) {
-    return new Delta(stream().filter(predicate).collect(toList()));
+    return stream().filter(predicate).collect(Collectors.toCollection(Delta::new));
   }
 
   public Delta insert(Object arg, AttributeMap attributes) {
@@ -76,7 +266,6 @@ public class Delta extends ArrayList<Op> {
     }
     int index = size();
     Op lastOp = get(index - 1);
-    newOp = newOp.copy();
     if (newOp.isDelete() && lastOp.isDelete()) {
       set(index - 1, Op.delete(lastOp.length() + newOp.length()));
       return this;
@@ -86,7 +275,7 @@ public class Delta extends ArrayList<Op> {
     if (lastOp.isDelete() && newOp.isInsert()) {
       index -= 1;
       if (index == 0) {
-        insertFirst(newOp);
+        moveBeforeLast(newOp);
         return this;
       }
       lastOp = get(index - 1);
@@ -108,15 +297,20 @@ public class Delta extends ArrayList<Op> {
       }
     }
     if (index == size()) add(newOp);
-    else add(index, newOp);
+    else moveBeforeLast(newOp);
     return this;
   }
 
+  // Only the trailing delete is ever moved after an insert, no shift of the list is needed
+  private void moveBeforeLast(Op op) {
+    add(set(size() - 1, op));
+  }
+
   public Delta chop() {
     if (isEmpty()) return this;
     Op lastOp = getLast();
     if (lastOp.isRetain() && lastOp.attributes() == null) {
-      removeLast();
+      remove(size() - 1);
     }
     return this;
   }
@@ -144,17 +338,31 @@ public class Delta extends ArrayList<Op> {
   }
 
   public int changeLength() {
-    return reduce(
-        0,
-        (length, op) -> {
-          if (op.isInsert()) return length + op.length();
-          if (op.isDelete()) return length - op.length();
-          return length;
-        });
+    return insertLength - deleteLength;
   }
 
   public int length() {
-    return reduce(0, (length, op) -> length + op.length());
+    return insertLength + retainLength + deleteLength;
+  }
+
+  // Length of the document this change applies to
+  int baseLength() {
+    return retainLength + deleteLength;
+  }
+
+  // Rejects a document holding anything but inserts
+  void checkDocument() {
+    for (Op op : this) {
+      if (!op.isInsert())
+        throw new IllegalArgumentException("Document can only contain inserts, found " + op);
+    }
+  }
+
+  // Rejects a change reaching past the end of a document of the given length
+  void checkAppliesTo(int length) {
+    if (baseLength() > length)
+      throw new IllegalArgumentException(
+          "Change applies to " + baseLength() + " characters, document has " + length);
   }
 
   public Delta slice(int start) {
@@ -162,20 +370,46 @@ public class Delta extends ArrayList<Op> {
   }
 
   public Delta compose(Delta other) {
+    return compose(other, true);
+  }
+
+  /**
+   * Composes in parallel on the common {@link ForkJoinPool}, see {@link #parallelCompose(Delta,
+   * ForkJoinPool)}
+   */
+  public Delta parallelCompose(Delta other) {
+    return parallelCompose(other, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Same result as {@link #compose(Delta)}, computed by chunks in parallel
+   *
+   * <p>Both deltas are cut at the same positions, then chunks are composed on {@code pool} and
+   * joined. Deltas too small to be worth cutting are composed on the calling thread.
+   *
+   * @param other the delta to compose with
+   * @param pool the pool running the chunks
+   * @return the composed delta
+   */
+  public Delta parallelCompose(Delta other, ForkJoinPool pool) {
+    return ParallelCompose.compose(this, other, pool);
+  }
+
+  // Keeps a trailing retain when chop is false, to compose a delta chunk by chunk
+  Delta compose(Delta other, boolean chop) {
     final Delta.Iterator it = iterator();
     final Delta.Iterator otherIt = other.iterator();
 
-    final Delta combined = new Delta();
+    final Delta delta = new Delta();
     final Op firstOther = otherIt.peek();
     if (firstOther != null && firstOther.isRetain() && firstOther.attributes() == null) {
       int firstLeft = firstOther.length();
       while (it.peekType() == INSERT && it.peekLength() <= firstLeft) {
         firstLeft -= it.peekLength();
-        combined.add(it.next());
+        delta.add(it.next());
       }
-      if (firstOther.length() - firstLeft > 0) otherIt.next(firstOther.length() - firstLeft);
+      if (firstOther.length() - firstLeft > 0) otherIt.skip(firstOther.length() - firstLeft);
     }
-    final Delta delta = new Delta(combined);
 
     while (it.hasNext() || otherIt.hasNext()) {
 
@@ -184,28 +418,128 @@ public class Delta extends ArrayList<Op> {
       else {
 
         final int length = Math.min(it.peekLength(), otherIt.peekLength());
-        final Op thisOp = it.next(length);
-        final Op otherOp = otherIt.next(length);
 
-        if (otherOp.isRetain()) {
+        if (otherIt.peekType() == RETAIN) {
           Op newOp;
+          final boolean thisIsRetain = it.peekType() == RETAIN;
           // Preserve null when composing with a retain, otherwise remove it for inserts
           AttributeMap attributes =
-              AttributeMap.compose(thisOp.attributes(), otherOp.attributes(), thisOp.isRetain());
-          if (thisOp.isRetain()) newOp = Op.retain(length, attributes);
-          else newOp = Op.insert(thisOp.arg(), attributes);
+              AttributeMap.compose(it.peekAttributes(), otherIt.peekAttributes(), thisIsRetain);
+          if (thisIsRetain) newOp = Op.retain(length, attributes);
+          else newOp = Op.insert(it.peekArg(length), attributes);
+          it.skip(length);
+          otherIt.skip(length);
           delta.push(newOp);
           // Optimization if rest of other is just retain
           if (!otherIt.hasNext() && delta.getLast().equals(newOp)) {
-            final Delta rest = new Delta(it.rest());
-            return delta.concat(rest).chop();
+            // The tail of this delta is copied once, straight into the result
+            final List<Op> rest = it.restView();
+            if (!rest.isEmpty()) {
+              delta.push(rest.getFirst());
+              delta.addAll(rest.subList(1, rest.size()));
+            }
+            return chop ? delta.chop() : delta;
           }
-        } else if (otherOp.isDelete() && thisOp.isRetain()) {
-          delta.push(otherOp);
+        } else {
+          // Other is a delete, it cancels an insert or deletes what this retains
+          if (it.peekType() == RETAIN) delta.push(Op.delete(length));
+          it.skip(length);
+          otherIt.skip(length);
         }
       }
     }
-    return delta.chop();
+    return chop ? delta.chop() : delta;
+  }
+
+  /**
+   * Composes two streams of ops, as {@link #compose(Delta)} would compose the deltas they hold
+   *
+   * <p>Only the current op of each source and the last ops of the result are held in memory, so
+   * the deltas can be larger than the heap, e.g. read with {@link DeltaJson#readOps}. The ops
+   * reach {@code sink} merged and ordered as {@link #push(Op)} would, without a trailing retain.
+   *
+   * @param ops the ops of the first delta
+   * @param otherOps the ops of the delta to compose with
+   * @param sink receives the ops of the composed delta
+   */
+  public static void compose(
+      java.util.Iterator<Op> ops, java.util.Iterator<Op> otherOps, OpSink sink) {
+    final OpStream it = new OpStream(ops);
+    final OpStream otherIt = new OpStream(otherOps);
+    final PushingSink out = new PushingSink(sink);
+    while (it.hasNext() || otherIt.hasNext()) {
+      if (otherIt.peekType() == INSERT) out.push(otherIt.next());
+      else if (it.peekType() == DELETE) out.push(it.next());
+      else {
+        final int length = Math.min(it.peekLength(), otherIt.peekLength());
+        final Op op = it.next(length);
+        final Op otherOp = otherIt.next(length);
+        if (otherOp.isRetain()) {
+          // Preserve null when composing with a retain, otherwise remove it for inserts
+          final AttributeMap attributes =
+              AttributeMap.compose(op.attributes(), otherOp.attributes(), op.isRetain());
+          final Op newOp =
+              op.isRetain() ? Op.retain(length, attributes) : Op.insert(op.arg(), attributes);
+          out.push(newOp);
+          // Same shortcut as compose(Delta) once other is just retain, the rest is passed as is
+          if (!otherIt.hasNext() && out.last().equals(newOp)) {
+            while (it.hasNext()) out.push(it.next());
+          }
+        } else if (op.isRetain()) {
+          // Other is a delete, it cancels an insert or deletes what this retains
+          out.push(Op.delete(length));
+        }
+      }
+    }
+    out.close();
+  }
+
+  /**
+   * Composes deltas in order, as chaining {@link #compose(Delta)} over them would
+   *
+   * <p>Deltas are composed pairwise as a balanced tree, so each op goes through {@code O(log n)}
+   * compositions instead of one per following delta. Long lists are reduced in parallel on the
+   * common {@link ForkJoinPool}.
+   *
+   * @param deltas the deltas to compose, they are not modified
+   * @return the composition of all deltas, an empty delta if there are none
+   */
+  public static Delta composeAll(List<Delta> deltas) {
+    if (deltas.isEmpty()) return new Delta();
+    if (deltas.size() == 1) return new Delta(deltas.getFirst());
+    if (deltas.size() <= ComposeAllTask.SEQUENTIAL_THRESHOLD)
+      return ComposeAllTask.composeRange(deltas, 0, deltas.size());
+    return ForkJoinPool.commonPool().invoke(new ComposeAllTask(deltas, 0, deltas.size()));
+  }
+
+  /**
+   * Streams the lines of this document, like {@link #eachLine(BiFunction)} without copying them
+   *
+   * <p>Lines are found as the stream is consumed, and the stream splits into whole lines to run
+   * in parallel. Like {@code eachLine}, it stops at the first op that is not an insert, dropping
+   * the line it interrupts. The document must not be modified while the stream is in use.
+   *
+   * @return the lines of this document, a last line without newline included if not empty
+   */
+  public Stream<Line> lines() {
+    int end = 0;
+    int count = 0;
+    while (count < size() && get(count).isInsert()) end += get(count++).length();
+    if (count < size()) end = lastNewline(count, end) + 1;
+    // Offsets are computed now, parallel readers then only read them
+    offsets();
+    return StreamSupport.stream(new LineSpliterator(this, 0, end), false);
+  }
+
+  // Position of the last newline in the first count ops, ending at end, -1 if there is none
+  private int lastNewline(int count, int end) {
+    for (int i = count - 1; i >= 0; i--) {
+      final Op op = get(i);
+      end -= op.length();
+      final int index = op.isTextInsert() ? op.argAsString().lastIndexOf('\n') : -1;
+      if (index >= 0) return end + index;
+    }
+    return -1;
   }
 
   public void eachLine(BiFunction<Delta, AttributeMap, Boolean> predicate, String newLine) {
@@ -214,7 +548,7 @@ public class Delta extends ArrayList<Op> {
     while (it.hasNext()) {
       if (it.peekType() != INSERT) return;
       final Op thisOp = it.peek();
-      final int start = thisOp.length() - it.peekLength();
+      final int start = it.peekOffset();
       final int index =
           thisOp.isTextInsert() ? thisOp.argAsString().indexOf(newLine, start) - start : -1;
       if (index < 0) line.push(it.next());
@@ -233,46 +567,209 @@ public class Delta extends ArrayList<Op> {
 
   public Delta invert(Delta base) {
     final Delta inverted = new Delta();
-    reduce(
-        0,
-        (Integer baseIndex, Op op) -> {
-          if (op.isInsert()) inverted.delete(op.length());
-          else if (op.isRetain() && op.attributes() == null) {
-            inverted.retain(op.length());
-            return baseIndex + op.length();
-          } else if (op.isDelete() || (op.isRetain() && op.hasAttributes())) {
-            int length = op.length();
-            final Delta slice = base.slice(baseIndex, baseIndex + length);
-            slice.forEach(
-                (baseOp) -> {
-                  if (op.isDelete()) inverted.push(baseOp);
-                  else if (op.isRetain() && op.hasAttributes())
-                    inverted.retain(
-                        baseOp.length(), AttributeMap.invert(op.attributes(), baseOp.attributes()));
-                });
-            return baseIndex + length;
-          }
-          return baseIndex;
-        });
+    // A single iterator over base, moving forward along the retains and deletes of this delta
+    final Delta.Iterator baseIt = base.iterator();
+    for (int i = 0; i < size(); i++) {
+      final Op op = get(i);
+      if (op.isInsert()) {
+        inverted.delete(op.length());
+      } else if (op.attributes() == null && op.isRetain()) {
+        inverted.retain(op.length());
+        baseIt.skipAll(op.length());
+      } else {
+        int length = op.length();
+        while (length > 0 && baseIt.hasNext()) {
+          final Op baseOp = baseIt.next(length);
+          if (op.isDelete()) inverted.push(baseOp);
+          else
+            inverted.retain(
+                baseOp.length(), AttributeMap.invert(op.attributes(), baseOp.attributes()));
+          length -= baseOp.length();
+        }
+      }
+    }
     return inverted.chop();
   }
 
-  public Delta slice(int start, int end) {
-    final Delta newDelta = new Delta();
+  /**
+   * Computes the change between two documents, embeds being compared as {@link Op#EMBED}
+   *
+   * @param other a document, i.e. a delta made of inserts only
+   * @return the delta that turns this document into {@code other}
+   */
+  public Delta diff(Delta other) {
+    if (this == other) return new Delta();
+    final String text = documentText(this);
+    if (text == null) throw new IllegalStateException("diff() called with non-document");
+    final String otherText = documentText(other);
+    if (otherText == null) throw new IllegalArgumentException("diff() called on non-document");
+    final Delta delta = new Delta();
     final Delta.Iterator it = iterator();
-    int index = 0;
-    while (index < end && it.hasNext()) {
-      Op nextOp;
-      if (index < start) nextOp = it.next(start - index);
+    final Delta.Iterator otherIt = other.iterator();
+    for (diff_match_patch.Diff component : new diff_match_patch().diff_main(text, otherText)) {
+      int length = component.text.length();
+      while (length > 0) {
+        int opLength;
+        switch (component.operation) {
+          case INSERT -> {
+            opLength = Math.min(otherIt.peekLength(), length);
+            delta.push(otherIt.next(opLength));
+          }
+          case DELETE -> {
+            opLength = it.skip(length);
+            delta.delete(opLength);
+          }
+          default -> {
+            opLength = Math.min(Math.min(it.peekLength(), otherIt.peekLength()), length);
+            final Op thisOp = it.next(opLength);
+            final Op otherOp = otherIt.next(opLength);
+            if (Objects.equals(thisOp.arg(), otherOp.arg())) {
+              delta.retain(opLength, AttributeMap.diff(thisOp.attributes(), otherOp.attributes()));
+            } else {
+              delta.push(otherOp).delete(opLength);
+            }
+          }
+        }
+        length -= opLength;
+      }
+    }
+    return delta.chop();
+  }
+
+  // Text of a document with embeds replaced by a placeholder, null if it is not a document
+  private static String documentText(Delta document) {
+    final StringBuilder builder = new StringBuilder();
+    for (Op op : document) {
+      if (!op.isInsert()) return null;
+      builder.append(op.isTextInsert() ? op.argAsString() : Op.EMBED);
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Transforms {@code other} against this delta, both being applied to the same document
+   *
+   * @param other the concurrent delta to transform
+   * @param priority {@code true} if this delta happened first, its inserts then go first
+   * @return {@code other} rewritten to apply after this delta
+   */
+  public Delta transform(Delta other, boolean priority) {
+    final Delta.Iterator it = iterator();
+    final Delta.Iterator otherIt = other.iterator();
+    final Delta delta = new Delta();
+    while (it.hasNext() || otherIt.hasNext()) {
+      if (it.peekType() == INSERT && (priority || otherIt.peekType() != INSERT)) {
+        delta.retain(it.skip(it.peekLength()));
+      } else if (otherIt.peekType() == INSERT) delta.push(otherIt.next());
       else {
-        nextOp = it.next(end - index);
-        newDelta.add(nextOp);
+        final int length = Math.min(it.peekLength(), otherIt.peekLength());
+        // Our delete either makes their delete redundant or removes their retain
+        if (it.peekType() != DELETE) {
+          if (otherIt.peekType() == DELETE) delta.push(Op.delete(length));
+          // We retain either their retain or insert
+          else
+            delta.retain(
+                length,
+                AttributeMap.transform(it.peekAttributes(), otherIt.peekAttributes(), priority));
+        }
+        it.skip(length);
+        otherIt.skip(length);
       }
+    }
+    return delta.chop();
+  }
+
+  public Delta transform(Delta other) {
+    return transform(other, false);
+  }
+
+  /**
+   * @param index a position in the document this delta applies to
+   * @param priority {@code true} if an insert at {@code index} should not move it
+   * @return the position once this delta is applied
+   */
+  public int transformPosition(int index, boolean priority) {
+    final Delta.Iterator it = iterator();
+    int offset = 0;
+    while (it.hasNext() && offset <= index) {
+      final Op.Type type = it.peekType();
+      final int length = it.skip(it.peekLength());
+      if (type == DELETE) {
+        index -= Math.min(length, index - offset);
+        continue;
+      } else if (type == INSERT && (offset < index || !priority)) {
+        index += length;
+      }
+      offset += length;
+    }
+    return index;
+  }
+
+  public int transformPosition(int index) {
+    return transformPosition(index, false);
+  }
+
+  public Delta slice(int start, int end) {
+    final Delta newDelta = new Delta();
+    start = Math.max(0, start);
+    if (start >= end) return newDelta;
+    final Delta.Iterator it = iteratorAt(start);
+    int index = start;
+    while (index < end && it.hasNext()) {
+      final Op nextOp = it.next(end - index);
+      newDelta.add(nextOp);
       index += nextOp.length();
     }
     return newDelta;
   }
 
+  /**
+   * Same ops as {@link #slice(int, int)}, read from this delta rather than copied
+   *
+   * @param start position of the first character of the view
+   * @param end position after the last character of the view
+   * @return a read-only view, unusable once this delta is structurally modified
+   */
+  public DeltaView sliceView(int start, int end) {
+    start = Math.max(0, start);
+    end = Math.min(end, length());
+    if (start >= end) return new DeltaView(this, 0, 0, null, null);
+    final int from = opIndexAt(start);
+    final int to = opIndexAt(end);
+    return view(from, start - opStart(from), to, to < size() ? end - opStart(to) : 0);
+  }
+
+  /**
+   * @param fromIndex index of the first op
+   * @param fromOffset offset of the first character in that op
+   * @param toIndex index of the op holding the end
+   * @param toOffset offset of the end in that op, 0 to end before it
+   * @return a view of the ops between the two bounds
+   */
+  DeltaView view(int fromIndex, int fromOffset, int toIndex, int toOffset) {
+    final int lastIndex = toOffset > 0 ? toIndex : toIndex - 1;
+    if (lastIndex < fromIndex) return new DeltaView(this, 0, 0, null, null);
+    final int lastEnd = toOffset > 0 ? toOffset : get(lastIndex).length();
+    if (fromIndex == lastIndex) {
+      if (fromOffset >= lastEnd) return new DeltaView(this, 0, 0, null, null);
+      final boolean cut = fromOffset > 0 || lastEnd < get(fromIndex).length();
+      final Op first = cut ? cut(fromIndex, fromOffset, lastEnd) : null;
+      return new DeltaView(this, fromIndex, fromIndex + 1, first, null);
+    }
+    final Op first = fromOffset > 0 ? cut(fromIndex, fromOffset, get(fromIndex).length()) : null;
+    final Op last = lastEnd < get(lastIndex).length() ? cut(lastIndex, 0, lastEnd) : null;
+    return new DeltaView(this, fromIndex, lastIndex + 1, first, last);
+  }
+
+  // Part of the op at index, from one of its characters to another
+  private Op cut(int index, int from, int to) {
+    return new Iterator(this, index, from).next(to - from);
+  }
+
+  int modCount() {
+    return modCount;
+  }
+
   public Delta concat(Delta other) {
     final Delta delta = new Delta(this);
     if (!other.isEmpty()) {
@@ -296,15 +793,117 @@ public class Delta extends ArrayList<Op> {
 
   @Override
   public String toString() {
-    ObjectMapper mapper = new ObjectMapper();
-    ObjectWriter writer = mapper.writerWithDefaultPrettyPrinter();
     try {
-      return writer.writeValueAsString(this);
+      return DeltaJson.toPrettyJson(this);
     } catch (JsonProcessingException e) {
       return "Error while generating json:\n" + e.getMessage();
     }
   }
 
+  /**
+   * Builds a delta op by op, with the same merging rules as {@link Delta#push(Op)}.
+   *
+   * <p>The trailing text insert is kept in a growable buffer, and a trailing delete as a count, so
+   * that consecutive inserts sharing attributes are appended in amortized constant time instead of
+   * copying the whole text. The buffer becomes a string when {@link #build()} is called, after
+   * which the builder can no longer be used.
+   */
+  public static final class Builder {
+
+    private final Delta delta = new Delta();
+    private final StringBuilder text = new StringBuilder();
+    private ImmutableAttributeMap textAttributes;
+    private int deleteLength;
+    private boolean built;
+
+    private Builder() {}
+
+    public Builder insert(String text) {
+      return insert(text, null);
+    }
+
+    public Builder insert(Map<String, Object> embed) {
+      return insert(embed, null);
+    }
+
+    public Builder insert(Object arg, AttributeMap attributes) {
+      checkNotBuilt();
+      if (arg == null) return this;
+      if (!(arg instanceof String string)) {
+        // Embeds go before a trailing delete, like any insert
+        flushText();
+        delta.push(Op.insert(arg, attributes));
+        return this;
+      }
+      if (string.isEmpty()) return this;
+      final ImmutableAttributeMap interned = Op.internAttributes(attributes);
+      if (!text.isEmpty() && !Objects.equals(textAttributes, interned)) flushText();
+      text.append(string);
+      textAttributes = interned;
+      return this;
+    }
+
+    public Builder delete(int length) {
+      checkNotBuilt();
+      if (length > 0) deleteLength += length;
+      return this;
+    }
+
+    public Builder retain(int length) {
+      return retain(length, null);
+    }
+
+    public Builder retain(int length, AttributeMap attributes) {
+      checkNotBuilt();
+      if (length <= 0) return this;
+      flush();
+      delta.push(Op.retain(length, attributes));
+      return this;
+    }
+
+    public Builder push(Op op) {
+      return switch (op.type()) {
+        case INSERT -> insert(op.arg(), op.attributes());
+        case DELETE -> delete(op.length());
+        case RETAIN -> retain(op.length(), op.attributes());
+      };
+    }
+
+    /**
+     * @return the built delta, the builder cannot be used afterwards
+     */
+    public Delta build() {
+      checkNotBuilt();
+      flush();
+      built = true;
+      return delta;
+    }
+
+    private void flushText() {
+      if (text.isEmpty()) return;
+      delta.push(Op.insert(text.toString(), textAttributes));
+      text.setLength(0);
+      textAttributes = null;
+    }
+
+    private void flush() {
+      flushText();
+      if (deleteLength > 0) delta.push(Op.delete(deleteLength));
+      deleteLength = 0;
+    }
+
+    private void checkNotBuilt() {
+      if (built) throw new IllegalStateException("Delta already built");
+    }
+  }
+
+  /**
+   * Iterates over the ops of a delta, possibly splitting them.
+   *
+   * <p>Besides the {@link java.util.Iterator} methods that return new ops, the {@code peek*}
+   * methods and {@link #skip(int)} give cursor-style access to the current position without
+   * allocating anything.
+   */
   public static class Iterator implements java.util.Iterator<Op> {
 
     private final Delta delta;
@@ -316,6 +915,26 @@ public class Delta extends ArrayList<Op> {
       this.delta = delta;
     }
 
+    // Starts offset characters into the op at index
+    Iterator(Delta delta, int index, int offset) {
+      this.delta = delta;
+      this.index = index;
+      this.offset = offset;
+    }
+
+    // Skips length characters across as many ops as needed, by binary search when the delta
+    // already has an offset index, without building one
+    void skipAll(int length) {
+      final int[] offsets = delta.indexedOffsets();
+      if (offsets != null && index < delta.size()) {
+        final int target = offsets[index] + offset + length;
+        index = delta.opIndexAt(target);
+        offset = index < delta.size() ? target - offsets[index] : 0;
+        return;
+      }
+      while (length > 0 && hasNext()) length -= skip(length);
+    }
+
     public Op next(int length) {
       if (index >= delta.size()) return Op.retain(Integer.MAX_VALUE, null);
 
@@ -327,6 +946,8 @@ public class Delta extends ArrayList<Op> {
         length = opLength - offset;
         this.index += 1;
         this.offset = 0;
+        // Ops are never modified, the whole op can be handed out as is
+        if (offset == 0) return nextOp;
       } else {
         this.offset += length;
       }
@@ -345,6 +966,24 @@ public class Delta extends ArrayList<Op> {
       }
     }
 
+    /**
+     * Moves forward without creating the op that {@link #next(int)} would return
+     *
+     * @param length the maximum length to skip
+     * @return the length actually skipped, never more than what is left of the current op
+     */
+    public int skip(int length) {
+      if (index >= delta.size()) return length;
+      final int left = delta.get(index).length() - offset;
+      if (length >= left) {
+        index += 1;
+        offset = 0;
+        return left;
+      }
+      offset += length;
+      return length;
+    }
+
     public Op peek() {
       if (index >= delta.size()) return null;
       return delta.get(index);
@@ -360,18 +999,40 @@ public class Delta extends ArrayList<Op> {
       return delta.get(index).type();
     }
 
+    /**
+     * @return how much of the current op has already been consumed
+     */
+    public int peekOffset() {
+      return offset;
+    }
+
+    public AttributeMap peekAttributes() {
+      if (index >= delta.size()) return null;
+      return delta.get(index).attributes();
+    }
+
+    /**
+     * @param length the length to take from the current insert
+     * @return the part of the current insert argument that {@link #next(int)} would return
+     */
+    Object peekArg(int length) {
+      final Op op = delta.get(index);
+      if (!op.isTextInsert()) return op.arg();
+      final String text = op.argAsString();
+      return text.substring(offset, Math.min(text.length(), offset + length));
+    }
+
     public Delta rest() {
-      if (!hasNext()) return new Delta();
-      if (offset == 0) return new Delta(delta.subList(index, delta.size()));
-      final int offset = this.offset;
-      final int index = this.index;
-      final Op next = next();
-      final Delta rest = new Delta(delta.subList(this.index, delta.size()));
-      this.offset = offset;
-      this.index = index;
-      var delta = new Delta(List.of(next));
-      delta.addAll(rest);
-      return delta;
+      return restView().toDelta();
+    }
+
+    /**
+     * @return a read-only view of the ops left, the current one cut at the current position
+     */
+    public DeltaView restView() {
+      if (!hasNext()) return new DeltaView(delta, 0, 0, null, null);
+      final Op first = offset == 0 ? null : new Iterator(delta, index, offset).next();
+      return new DeltaView(delta, index, delta.size(), first, null);
     }
 
     @Override
@@ -384,4 +1045,83 @@ public class Delta extends ArrayList<Op> {
       return next(Integer.MAX_VALUE);
     }
   }
+
+  // Ops of a range, copied at once rather than one get() at a time
+  private Object[] toArray(int fromIndex, int toIndex) {
+    return super.subList(fromIndex, toIndex).toArray();
+  }
+
+  private static final class SubList extends AbstractList<Op> implements RandomAccess {
+    private final Delta delta;
+    private final int offset;
+    private int size;
+    private int expectedModCount;
+
+    SubList(Delta delta, int fromIndex, int toIndex) {
+      this.delta = delta;
+      this.offset = fromIndex;
+      this.size = toIndex - fromIndex;
+      this.expectedModCount = delta.modCount;
+    }
+
+    @Override
+    public Op get(int index) {
+      Objects.checkIndex(index, size);
+      checkForComodification();
+      return delta.get(offset + index);
+    }
+
+    @Override
+    public Op set(int index, Op op) {
+      Objects.checkIndex(index, size);
+      checkForComodification();
+      return delta.set(offset + index, op);
+    }
+
+    @Override
+    public int size() {
+      checkForComodification();
+      return size;
+    }
+
+    @Override
+    public void add(int index, Op op) {
+      Objects.checkIndex(index, size + 1);
+      checkForComodification();
+      delta.add(offset + index, op);
+      updateSize(1);
+    }
+
+    @Override
+    public Op remove(int index) {
+      Objects.checkIndex(index, size);
+      checkForComodification();
+      final Op removed = delta.remove(offset + index);
+      updateSize(-1);
+      return removed;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+      checkForComodification();
+      delta.removeRange(offset + fromIndex, offset + toIndex);
+      updateSize(fromIndex - toIndex);
+    }
+
+    @Override
+    public Object[] toArray() {
+      checkForComodification();
+      return delta.toArray(offset, offset + size);
+    }
+
+    private void updateSize(int change) {
+      size += change;
+      expectedModCount = delta.modCount;
+      modCount += 1;
+    }
+
+    private void checkForComodification() {
+      if (delta.modCount != expectedModCount) throw new ConcurrentModificationException();
+    }
+  }
 }
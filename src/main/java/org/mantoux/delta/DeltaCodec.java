@@ -0,0 +1,361 @@
+package org.mantoux.delta;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of {@link Delta}, an alternative to JSON for streams of changes.
+ *
+ * <p>A delta is written as its op count followed by its ops. An op starts with a varint holding its
+ * type in the 2 low bits and its length above them, the length of a text insert being the number of
+ * bytes of its UTF-8 text, which follows. Text inserts and retains then refer to their attributes:
+ * 0 for none, 1 for a map written next, {@code n >= 2} for the map of id {@code n - 2}. Maps
+ * written are numbered in order, up to {@link #MAX_DICTIONARY_SIZE} per stream, so that formats
+ * repeated across the changes of a stream are only written once. Attribute values are typed,
+ * values other than strings, booleans, integers, longs, doubles and {@code null} being written as
+ * JSON, as are embeds.
+ *
+ * <p>The dictionary makes {@link Encoder} and {@link Decoder} stateful: a stream is encoded by one
+ * encoder and decoded, in the same order, by one decoder. Neither is thread-safe.
+ */
+public final class DeltaCodec {
+
+  /** Number of attribute maps a stream numbers, later maps being written every time. */
+  public static final int MAX_DICTIONARY_SIZE = 4096;
+
+  private static final int TEXT = 0;
+  private static final int EMBED = 1;
+  private static final int RETAIN = 2;
+  private static final int DELETE = 3;
+
+  private static final int NO_ATTRIBUTES = 0;
+  private static final int LITERAL_ATTRIBUTES = 1;
+
+  private static final byte NULL_VALUE = 0;
+  private static final byte TRUE_VALUE = 1;
+  private static final byte FALSE_VALUE = 2;
+  private static final byte INT_VALUE = 3;
+  private static final byte LONG_VALUE = 4;
+  private static final byte DOUBLE_VALUE = 5;
+  private static final byte STRING_VALUE = 6;
+  private static final byte JSON_VALUE = 7;
+
+  private DeltaCodec() {}
+
+  /** Writes the deltas of a stream. */
+  public static final class Encoder {
+    private final Map<AttributeMap, Integer> ids = new HashMap<>();
+    private final List<AttributeMap> dictionary = new ArrayList<>();
+
+    /**
+     * @param delta the delta to encode
+     * @return a buffer holding the encoded delta, ready to be read
+     */
+    public ByteBuffer encode(Delta delta) throws IOException {
+      int capacity = 16;
+      for (Op op : delta) capacity += op.isTextInsert() ? 3 * op.length() + 8 : 8;
+      while (true) {
+        final ByteBuffer out = ByteBuffer.allocate(capacity);
+        try {
+          encode(delta, out);
+          return out.flip();
+        } catch (BufferOverflowException e) {
+          capacity *= 2;
+        }
+      }
+    }
+
+    /**
+     * Writes a delta at the position of a buffer
+     *
+     * @param delta the delta to encode
+     * @param out the buffer, left untouched if the delta cannot be written
+     * @throws BufferOverflowException if the delta does not fit in the remaining bytes of {@code
+     *     out}
+     */
+    public void encode(Delta delta, ByteBuffer out) throws IOException {
+      final int position = out.position();
+      final int dictionarySize = dictionary.size();
+      boolean done = false;
+      try {
+        writeVarint(out, delta.size());
+        for (Op op : delta) write(op, out);
+        done = true;
+      } finally {
+        if (!done) {
+          // The decoder never sees this delta, the maps it numbered are forgotten
+          for (AttributeMap attributes : dictionary.subList(dictionarySize, dictionary.size()))
+            ids.remove(attributes);
+          dictionary.subList(dictionarySize, dictionary.size()).clear();
+          out.position(position);
+        }
+      }
+    }
+
+    private void write(Op op, ByteBuffer out) throws IOException {
+      switch (op.type()) {
+        case INSERT -> {
+          if (op.isTextInsert()) {
+            final String text = op.argAsString();
+            writeVarint(out, (long) utf8Length(text) << 2 | TEXT);
+            writeUtf8(out, text);
+            writeAttributes(op.attributes(), out);
+          } else {
+            writeVarint(out, EMBED);
+            writeJson(op.arg(), out);
+          }
+        }
+        case RETAIN -> {
+          writeVarint(out, (long) op.length() << 2 | RETAIN);
+          writeAttributes(op.attributes(), out);
+        }
+        case DELETE -> writeVarint(out, (long) op.length() << 2 | DELETE);
+      }
+    }
+
+    private void writeAttributes(AttributeMap attributes, ByteBuffer out) throws IOException {
+      if (attributes == null || attributes.isEmpty()) {
+        writeVarint(out, NO_ATTRIBUTES);
+        return;
+      }
+      final Integer id = ids.get(attributes);
+      if (id != null) {
+        writeVarint(out, id + 2);
+        return;
+      }
+      writeVarint(out, LITERAL_ATTRIBUTES);
+      writeVarint(out, attributes.size());
+      for (var entry : attributes.entrySet()) {
+        writeString(out, entry.getKey());
+        writeValue(entry.getValue(), out);
+      }
+      if (dictionary.size() < MAX_DICTIONARY_SIZE) {
+        ids.put(attributes, dictionary.size());
+        dictionary.add(attributes);
+      }
+    }
+
+    private static void writeValue(Object value, ByteBuffer out) throws IOException {
+      if (value == null) out.put(NULL_VALUE);
+      else if (value instanceof Boolean b) out.put(b ? TRUE_VALUE : FALSE_VALUE);
+      else if (value instanceof Integer i) {
+        out.put(INT_VALUE);
+        writeVarint(out, zigzag(i));
+      } else if (value instanceof Long l) {
+        out.put(LONG_VALUE);
+        writeVarint(out, zigzag(l));
+      } else if (value instanceof Double d) out.put(DOUBLE_VALUE).putDouble(d);
+      else if (value instanceof String s) {
+        out.put(STRING_VALUE);
+        writeString(out, s);
+      } else {
+        out.put(JSON_VALUE);
+        writeJson(value, out);
+      }
+    }
+
+    private static void writeJson(Object value, ByteBuffer out) throws IOException {
+      final byte[] json = DeltaJson.toJsonBytes(value);
+      writeVarint(out, json.length);
+      out.put(json);
+    }
+
+    private static void writeString(ByteBuffer out, String text) {
+      writeVarint(out, utf8Length(text));
+      writeUtf8(out, text);
+    }
+
+    private static long zigzag(long value) {
+      return (value << 1) ^ (value >> 63);
+    }
+  }
+
+  /** Reads the deltas of a stream, in the order they were encoded. */
+  public static final class Decoder {
+    private final List<ImmutableAttributeMap> dictionary = new ArrayList<>();
+
+    /**
+     * Reads a delta from the position of a buffer, leaving it after the delta
+     *
+     * @param in the buffer
+     * @return the delta
+     * @throws BufferUnderflowException if {@code in} ends before the delta
+     */
+    public Delta decode(ByteBuffer in) throws IOException {
+      final int size = readLength(in);
+      final Delta delta = new Delta();
+      // Every op takes at least a byte, a corrupted size does not allocate more
+      delta.ensureCapacity(Math.min(size, in.remaining()));
+      for (int i = 0; i < size; i++) delta.add(read(in));
+      return delta;
+    }
+
+    private Op read(ByteBuffer in) throws IOException {
+      final long header = readVarint(in);
+      final long length = header >>> 2;
+      if (length > Integer.MAX_VALUE) throw new IOException("Invalid op length " + length);
+      return switch ((int) header & 3) {
+        case TEXT -> {
+          final String text = readUtf8(in, (int) length);
+          yield Op.insert(text, readAttributes(in));
+        }
+        case EMBED -> Op.insert(readJson(in));
+        case RETAIN -> Op.retain((int) length, readAttributes(in));
+        default -> Op.delete((int) length);
+      };
+    }
+
+    private ImmutableAttributeMap readAttributes(ByteBuffer in) throws IOException {
+      final int reference = readLength(in);
+      if (reference == NO_ATTRIBUTES) return null;
+      if (reference != LITERAL_ATTRIBUTES) {
+        if (reference - 2 >= dictionary.size())
+          throw new IOException("Unknown attributes " + (reference - 2));
+        return dictionary.get(reference - 2);
+      }
+      final int size = readLength(in);
+      final AttributeMap attributes = new AttributeMap();
+      for (int i = 0; i < size; i++) {
+        final String key = readUtf8(in, readLength(in));
+        attributes.put(key, readValue(in));
+      }
+      final ImmutableAttributeMap interned = ImmutableAttributeMap.intern(attributes);
+      if (dictionary.size() < MAX_DICTIONARY_SIZE) dictionary.add(interned);
+      return interned;
+    }
+
+    private static Object readValue(ByteBuffer in) throws IOException {
+      final byte type = in.get();
+      return switch (type) {
+        case NULL_VALUE -> null;
+        case TRUE_VALUE -> Boolean.TRUE;
+        case FALSE_VALUE -> Boolean.FALSE;
+        case INT_VALUE -> (int) unzigzag(readVarint(in));
+        case LONG_VALUE -> unzigzag(readVarint(in));
+        case DOUBLE_VALUE -> in.getDouble();
+        case STRING_VALUE -> readUtf8(in, readLength(in));
+        case JSON_VALUE -> readJson(in);
+        default -> throw new IOException("Invalid value type " + type);
+      };
+    }
+
+    private static Object readJson(ByteBuffer in) throws IOException {
+      final int length = readLength(in);
+      // Checked before allocating, a corrupted length would otherwise claim gigabytes
+      if (length > in.remaining()) throw new BufferUnderflowException();
+      final byte[] json = new byte[length];
+      in.get(json);
+      return DeltaJson.readValue(json);
+    }
+
+    private static long unzigzag(long value) {
+      return (value >>> 1) ^ -(value & 1);
+    }
+  }
+
+  private static void writeVarint(ByteBuffer out, long value) {
+    while ((value & ~0x7FL) != 0) {
+      out.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.put((byte) value);
+  }
+
+  private static long readVarint(ByteBuffer in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      final byte b = in.get();
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) return value;
+    }
+    throw new IOException("Varint longer than 64 bits");
+  }
+
+  private static int readLength(ByteBuffer in) throws IOException {
+    final long length = readVarint(in);
+    if (length > Integer.MAX_VALUE) throw new IOException("Invalid length " + length);
+    return (int) length;
+  }
+
+  // Lone surrogates are encoded on 3 bytes like other chars, as WTF-8 does, so that any text
+  // round-trips
+  private static int utf8Length(String text) {
+    final int length = text.length();
+    int bytes = length;
+    for (int i = 0; i < length; i++) {
+      final char c = text.charAt(i);
+      if (c < 0x80) continue;
+      if (c < 0x800) bytes += 1;
+      else if (Character.isHighSurrogate(c)
+          && i + 1 < length
+          && Character.isLowSurrogate(text.charAt(i + 1))) {
+        bytes += 2;
+        i += 1;
+      } else bytes += 2;
+    }
+    return bytes;
+  }
+
+  private static void writeUtf8(ByteBuffer out, String text) {
+    final int length = text.length();
+    for (int i = 0; i < length; i++) {
+      final char c = text.charAt(i);
+      if (c < 0x80) out.put((byte) c);
+      else if (c < 0x800) out.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+      else if (Character.isHighSurrogate(c)
+          && i + 1 < length
+          && Character.isLowSurrogate(text.charAt(i + 1))) {
+        final int codePoint = Character.toCodePoint(c, text.charAt(++i));
+        out.put((byte) (0xF0 | codePoint >> 18))
+            .put((byte) (0x80 | codePoint >> 12 & 0x3F))
+            .put((byte) (0x80 | codePoint >> 6 & 0x3F))
+            .put((byte) (0x80 | codePoint & 0x3F));
+      } else {
+        out.put((byte) (0xE0 | c >> 12))
+            .put((byte) (0x80 | c >> 6 & 0x3F))
+            .put((byte) (0x80 | c & 0x3F));
+      }
+    }
+  }
+
+  private static String readUtf8(ByteBuffer in, int length) throws IOException {
+    final int start = in.position();
+    final int end = start + length;
+    if (end > in.limit() || end < start) throw new BufferUnderflowException();
+    // A text has at most as many chars as bytes
+    final char[] chars = new char[length];
+    int count = 0;
+    int i = start;
+    while (i < end) {
+      final int b = in.get(i);
+      if (b >= 0) {
+        chars[count++] = (char) b;
+        i += 1;
+      } else if ((b & 0xE0) == 0xC0 && i + 1 < end) {
+        chars[count++] = (char) ((b & 0x1F) << 6 | in.get(i + 1) & 0x3F);
+        i += 2;
+      } else if ((b & 0xF0) == 0xE0 && i + 2 < end) {
+        chars[count++] =
+            (char) ((b & 0x0F) << 12 | (in.get(i + 1) & 0x3F) << 6 | in.get(i + 2) & 0x3F);
+        i += 3;
+      } else if ((b & 0xF8) == 0xF0 && i + 3 < end) {
+        final int codePoint =
+            (b & 0x07) << 18
+                | (in.get(i + 1) & 0x3F) << 12
+                | (in.get(i + 2) & 0x3F) << 6
+                | in.get(i + 3) & 0x3F;
+        chars[count++] = Character.highSurrogate(codePoint);
+        chars[count++] = Character.lowSurrogate(codePoint);
+        i += 4;
+      } else throw new IOException("Invalid UTF-8 at " + i);
+    }
+    in.position(end);
+    return new String(chars, 0, count);
+  }
+}
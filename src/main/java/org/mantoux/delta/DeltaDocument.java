@@ -0,0 +1,287 @@
+package org.mantoux.delta;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.SplittableRandom;
+
+/**
+ * A document, i.e. a delta made of inserts only, stored as a balanced tree of ops.
+ *
+ * <p>The ops are the nodes of a treap ordered by position, each node caching the length of its
+ * subtree, and long text inserts are cut into chunks. Applying a change of {@code k} ops costs
+ * {@code O(k log n)} plus the length of the formatted ranges, where {@link Delta#compose(Delta)}
+ * copies the whole document.
+ *
+ * <p>Instances are not thread-safe.
+ */
+public class DeltaDocument {
+
+  // Longest text held by one node, bounds the cost of cutting or extending a chunk
+  static final int MAX_CHUNK_LENGTH = 1024;
+
+  private final SplittableRandom random = new SplittableRandom();
+
+  private Node root;
+
+  // Results of split(), kept in fields to avoid allocating a pair per call
+  private Node splitLeft;
+  private Node splitRight;
+
+  public DeltaDocument() {}
+
+  /**
+   * @param document the initial content, made of inserts only
+   */
+  public DeltaDocument(Delta document) {
+    document.checkDocument();
+    for (Op op : document) root = append(root, op);
+  }
+
+  public int length() {
+    return length(root);
+  }
+
+  /**
+   * Applies a change, as {@code document.compose(change)} would, leaving this document unchanged
+   * if the change is invalid
+   *
+   * @param change a change that retains or deletes no more than the length of this document
+   * @return this document
+   */
+  public DeltaDocument apply(Delta change) {
+    check(change);
+    int index = 0;
+    for (Op op : change) {
+      switch (op.type()) {
+        case INSERT -> {
+          insert(index, op);
+          index += op.length();
+        }
+        case DELETE -> delete(index, op.length());
+        case RETAIN -> {
+          if (op.attributes() != null) format(index, op.length(), op.attributes());
+          index += op.length();
+        }
+      }
+    }
+    return this;
+  }
+
+  /**
+   * @param change a change of this document
+   * @throws IllegalArgumentException if applying the change would fail
+   */
+  void check(Delta change) {
+    change.checkAppliesTo(length());
+    // Positions of the document before the change, inserts do not move them
+    int position = 0;
+    for (Op op : change) {
+      if (op.isInsert()) continue;
+      if (op.attributes() != null) checkFormat(root, 0, position, position + op.length(), op);
+      position += op.length();
+    }
+  }
+
+  // Embeds overlapping [start, end) cannot be given attributes, Op.insert would reject them
+  private static void checkFormat(Node node, int offset, int start, int end, Op format) {
+    if (node == null || offset >= end || offset + node.length <= start) return;
+    checkFormat(node.left, offset, start, end, format);
+    final int opStart = offset + length(node.left);
+    if (!node.op.isTextInsert() && opStart >= start && opStart < end) {
+      final AttributeMap attributes =
+          AttributeMap.compose(node.op.attributes(), format.attributes());
+      if (attributes != null && !attributes.isEmpty())
+        throw new IllegalArgumentException("Cannot format embed " + node.op + " with " + format);
+    }
+    checkFormat(node.right, opStart + node.op.length(), start, end, format);
+  }
+
+  public Delta toDelta() {
+    return slice(0, length());
+  }
+
+  public Delta slice(int start, int end) {
+    final TextMerger merger = new TextMerger();
+    collect(root, 0, start, Math.min(end, length()), merger);
+    return merger.finish();
+  }
+
+  // In-order walk of the nodes overlapping [start, end)
+  private static void collect(Node node, int offset, int start, int end, TextMerger merger) {
+    if (node == null || offset >= end || offset + node.length <= start) return;
+    collect(node.left, offset, start, end, merger);
+    final int opStart = offset + length(node.left);
+    final int opLength = node.op.length();
+    final int from = Math.max(start, opStart) - opStart;
+    final int to = Math.min(end, opStart + opLength) - opStart;
+    if (from < to) merger.add(node.op, from, to);
+    collect(node.right, opStart + opLength, start, end, merger);
+  }
+
+  private void insert(int index, Op op) {
+    split(root, index);
+    final Node right = splitRight;
+    root = merge(append(splitLeft, op), right);
+  }
+
+  private void delete(int index, int length) {
+    split(root, index);
+    final Node left = splitLeft;
+    split(splitRight, length);
+    root = merge(left, splitRight);
+  }
+
+  private void format(int index, int length, AttributeMap attributes) {
+    split(root, index);
+    final Node left = splitLeft;
+    split(splitRight, length);
+    final Node middle = splitLeft;
+    final Node right = splitRight;
+    // Formatting does not change lengths, ops are replaced in place
+    final Deque<Node> stack = new ArrayDeque<>();
+    if (middle != null) stack.push(middle);
+    while (!stack.isEmpty()) {
+      final Node node = stack.pop();
+      final Op op = node.op;
+      node.op = Op.insert(op.arg(), AttributeMap.compose(op.attributes(), attributes));
+      if (node.left != null) stack.push(node.left);
+      if (node.right != null) stack.push(node.right);
+    }
+    root = merge(merge(left, middle), right);
+  }
+
+  // Appends an op after the last one of the tree, in chunks for long texts
+  private Node append(Node tree, Op op) {
+    if (!op.isTextInsert()) return merge(tree, new Node(op, random.nextInt()));
+    final String text = op.argAsString();
+    if (extendLast(tree, text, op.attributes())) return tree;
+    int start = 0;
+    while (start < text.length()) {
+      int end = Math.min(text.length(), start + MAX_CHUNK_LENGTH);
+      // Never separate the two halves of a surrogate pair
+      if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) end -= 1;
+      final Op chunk = Op.insert(text.substring(start, end), op.attributes());
+      tree = merge(tree, new Node(chunk, random.nextInt()));
+      start = end;
+    }
+    return tree;
+  }
+
+  // Extends the last text of the tree when attributes match, keeping typing from creating a node
+  // per character
+  private static boolean extendLast(Node node, String text, AttributeMap attributes) {
+    if (node == null) return false;
+    if (node.right != null) {
+      if (!extendLast(node.right, text, attributes)) return false;
+    } else {
+      final Op last = node.op;
+      if (!last.isTextInsert()
+          || last.length() + text.length() > MAX_CHUNK_LENGTH
+          || !Objects.equals(last.attributes(), attributes)) return false;
+      node.op = Op.insert(last.argAsString() + text, attributes);
+    }
+    node.update();
+    return true;
+  }
+
+  // Splits the tree in a left part holding the first characters up to index and a right part
+  private void split(Node node, int index) {
+    if (node == null) {
+      splitLeft = null;
+      splitRight = null;
+      return;
+    }
+    final int leftLength = length(node.left);
+    final int opLength = node.op.length();
+    if (index <= leftLength) {
+      split(node.left, index);
+      node.left = splitRight;
+      node.update();
+      splitRight = node;
+    } else if (index >= leftLength + opLength) {
+      split(node.right, index - leftLength - opLength);
+      node.right = splitLeft;
+      node.update();
+      splitLeft = node;
+    } else {
+      // The index falls inside the text of this node, which is cut in two
+      final int offset = index - leftLength;
+      final String text = node.op.argAsString();
+      final AttributeMap attributes = node.op.attributes();
+      final Node tail = new Node(Op.insert(text.substring(offset), attributes), node.priority);
+      tail.right = node.right;
+      tail.update();
+      node.op = Op.insert(text.substring(0, offset), attributes);
+      node.right = null;
+      node.update();
+      splitLeft = node;
+      splitRight = tail;
+    }
+  }
+
+  private static Node merge(Node left, Node right) {
+    if (left == null) return right;
+    if (right == null) return left;
+    if (left.priority > right.priority) {
+      left.right = merge(left.right, right);
+      left.update();
+      return left;
+    }
+    right.left = merge(left, right.left);
+    right.update();
+    return right;
+  }
+
+  private static int length(Node node) {
+    return node == null ? 0 : node.length;
+  }
+
+  private static final class Node {
+    private final int priority;
+    private Op op;
+    private Node left;
+    private Node right;
+    private int length;
+
+    Node(Op op, int priority) {
+      this.op = op;
+      this.priority = priority;
+      this.length = op.length();
+    }
+
+    void update() {
+      length = DeltaDocument.length(left) + op.length() + DeltaDocument.length(right);
+    }
+  }
+
+  // Merges consecutive texts with the same attributes in a buffer rather than through Delta.push,
+  // which would copy the text at every chunk
+  private static final class TextMerger {
+    private final Delta delta = new Delta();
+    private final StringBuilder text = new StringBuilder();
+    private AttributeMap attributes;
+
+    void add(Op op, int from, int to) {
+      if (op.isTextInsert()) {
+        if (!text.isEmpty() && !Objects.equals(attributes, op.attributes())) flush();
+        text.append(op.argAsString(), from, to);
+        attributes = op.attributes();
+      } else {
+        flush();
+        delta.add(op);
+      }
+    }
+
+    Delta finish() {
+      flush();
+      return delta;
+    }
+
+    private void flush() {
+      if (text.isEmpty()) return;
+      delta.add(Op.insert(text.toString(), attributes));
+      text.setLength(0);
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package org.mantoux.delta;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * JSON (de)serialization of {@link Delta}, {@link Op} and {@link AttributeMap}.
+ *
+ * <p>Building an {@link ObjectMapper} is expensive, this class configures one once and only hands
+ * out its immutable, thread-safe readers and writers.
+ */
+public final class DeltaJson {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final ObjectWriter WRITER = MAPPER.writer();
+  private static final ObjectWriter PRETTY_WRITER = MAPPER.writerWithDefaultPrettyPrinter();
+  private static final ObjectReader DELTA_READER = MAPPER.readerFor(Delta.class);
+  private static final ObjectReader OP_READER = MAPPER.readerFor(Op.class);
+  private static final ObjectReader ATTRIBUTES_READER = MAPPER.readerFor(AttributeMap.class);
+
+  private DeltaJson() {}
+
+  /**
+   * @param pretty {@code true} to indent the output
+   * @return the shared writer
+   */
+  public static ObjectWriter writer(boolean pretty) {
+    return pretty ? PRETTY_WRITER : WRITER;
+  }
+
+  /**
+   * @param type {@link Delta}, {@link Op} or {@link AttributeMap}
+   * @return the shared reader for {@code type}
+   */
+  public static ObjectReader reader(Class<?> type) {
+    if (type == Delta.class) return DELTA_READER;
+    if (type == Op.class) return OP_READER;
+    if (type == AttributeMap.class) return ATTRIBUTES_READER;
+    throw new IllegalArgumentException("No reader for " + type.getName());
+  }
+
+  public static String toJson(Object value) throws JsonProcessingException {
+    return WRITER.writeValueAsString(value);
+  }
+
+  public static byte[] toJsonBytes(Object value) throws JsonProcessingException {
+    return WRITER.writeValueAsBytes(value);
+  }
+
+  public static String toPrettyJson(Object value) throws JsonProcessingException {
+    return PRETTY_WRITER.writeValueAsString(value);
+  }
+
+  public static Delta readDelta(String json) throws JsonProcessingException {
+    return DELTA_READER.readValue(json);
+  }
+
+  public static Delta readDelta(byte[] json) throws IOException {
+    return DELTA_READER.readValue(json);
+  }
+
+  public static Delta readDelta(InputStream json) throws IOException {
+    return DELTA_READER.readValue(json);
+  }
+
+  /**
+   * @param json a JSON array of ops, as written for a {@link Delta}
+   * @return an iterator reading the ops one at a time, to close once done
+   */
+  public static MappingIterator<Op> readOps(InputStream json) throws IOException {
+    return OP_READER.readValues(json);
+  }
+
+  public static Op readOp(String json) throws JsonProcessingException {
+    return OP_READER.readValue(json);
+  }
+
+  public static AttributeMap readAttributes(String json) throws JsonProcessingException {
+    return ATTRIBUTES_READER.readValue(json);
+  }
+
+  // Untyped value, as read for an embed or a nested attribute value
+  static Object readValue(byte[] json) throws IOException {
+    return MAPPER.readValue(json, Object.class);
+  }
+}
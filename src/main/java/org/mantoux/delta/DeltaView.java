@@ -0,0 +1,67 @@
+package org.mantoux.delta;
+
+import java.util.AbstractList;
+import java.util.ConcurrentModificationException;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Read-only view of a range of a {@link Delta}.
+ *
+ * <p>Only the ops cut by the bounds of the range are created, the others are read from the
+ * underlying delta. Like {@link java.util.List#subList(int, int)}, the view is no longer usable
+ * once the delta is structurally modified, and fails with a {@link
+ * ConcurrentModificationException}.
+ */
+public final class DeltaView extends AbstractList<Op> implements RandomAccess {
+
+  private final Delta delta;
+  private final int expectedModCount;
+  private final int from;
+  private final int size;
+  // Ops cut by the bounds of the range, null when the bound falls between two ops
+  private final Op first;
+  private final Op last;
+
+  /**
+   * @param delta the underlying delta
+   * @param from index of the first op of the view in {@code delta}
+   * @param to index after the last op of the view in {@code delta}
+   * @param first replaces the op at {@code from}, {@code null} to keep it
+   * @param last replaces the op before {@code to}, {@code null} to keep it
+   */
+  DeltaView(Delta delta, int from, int to, Op first, Op last) {
+    this.delta = delta;
+    this.expectedModCount = delta.modCount();
+    this.from = from;
+    this.size = to - from;
+    this.first = first;
+    this.last = last;
+  }
+
+  @Override
+  public Op get(int index) {
+    Objects.checkIndex(index, size);
+    checkForComodification();
+    if (index == 0 && first != null) return first;
+    if (index == size - 1 && last != null) return last;
+    return delta.get(from + index);
+  }
+
+  @Override
+  public int size() {
+    checkForComodification();
+    return size;
+  }
+
+  /**
+   * @return a copy of the ops of this view
+   */
+  public Delta toDelta() {
+    return new Delta(this);
+  }
+
+  private void checkForComodification() {
+    if (delta.modCount() != expectedModCount) throw new ConcurrentModificationException();
+  }
+}
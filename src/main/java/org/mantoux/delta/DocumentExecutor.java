@@ -0,0 +1,140 @@
+package org.mantoux.delta;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs tasks one document at a time: tasks submitted for the same key run in submission order,
+ * never concurrently, while tasks of different keys run in parallel.
+ *
+ * <p>Each key with pending tasks has a mailbox drained by a single virtual thread, so the tasks
+ * can work on the document without locking. A mailbox is dropped as soon as it is empty, idle
+ * documents cost nothing but their own state.
+ *
+ * <pre>{@code
+ * executor.submit(documentId, () -> documents.put(documentId, document.compose(change)));
+ * }</pre>
+ *
+ * @param <K> the type of the document keys
+ */
+public final class DocumentExecutor<K> implements AutoCloseable {
+
+  private final ExecutorService executor;
+  // Keys with tasks pending or running, a mailbox is only changed inside compute() for its key
+  private final ConcurrentHashMap<K, Mailbox> mailboxes = new ConcurrentHashMap<>();
+  private volatile boolean closed;
+
+  public DocumentExecutor() {
+    this(Executors.newVirtualThreadPerTaskExecutor());
+  }
+
+  /**
+   * @param executor runs the mailboxes, shut down by {@link #close()}
+   */
+  public DocumentExecutor(ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * @param key the document the task works on
+   * @param task the task, run after the tasks already submitted for {@code key}
+   * @return the result of the task
+   */
+  public <T> CompletableFuture<T> submit(K key, Callable<T> task) {
+    if (closed) throw new RejectedExecutionException("Executor is closed");
+    final Job<T> job = new Job<>(task);
+    final boolean[] created = new boolean[1];
+    final Mailbox mailbox =
+        mailboxes.compute(
+            key,
+            (k, existing) -> {
+              if (existing == null) {
+                existing = new Mailbox(k);
+                created[0] = true;
+              }
+              existing.tasks.add(job);
+              return existing;
+            });
+    // Started once compute() returned, an executor running it on this thread calls compute() too
+    if (created[0]) start(mailbox);
+    return job.result;
+  }
+
+  private void start(Mailbox mailbox) {
+    try {
+      executor.execute(mailbox);
+    } catch (RejectedExecutionException e) {
+      // The mailbox will never run, its tasks, possibly joined by others meanwhile, fail
+      mailboxes.remove(mailbox.key, mailbox);
+      Job<?> job;
+      while ((job = mailbox.tasks.poll()) != null) job.result.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  /**
+   * @return the number of documents with tasks pending or running
+   */
+  public int activeDocuments() {
+    return mailboxes.size();
+  }
+
+  /** Rejects new tasks, then waits for the submitted ones to complete. */
+  @Override
+  public void close() {
+    closed = true;
+    executor.shutdown();
+    boolean interrupted = false;
+    while (!executor.isTerminated()) {
+      try {
+        executor.awaitTermination(1, TimeUnit.DAYS);
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) Thread.currentThread().interrupt();
+  }
+
+  private final class Mailbox implements Runnable {
+    private final K key;
+    private final Queue<Job<?>> tasks = new ConcurrentLinkedQueue<>();
+
+    Mailbox(K key) {
+      this.key = key;
+    }
+
+    @Override
+    public void run() {
+      do {
+        Job<?> job;
+        while ((job = tasks.poll()) != null) job.run();
+        // Tasks are only added inside compute(), an empty mailbox is removed atomically
+      } while (mailboxes.compute(key, (k, mailbox) -> mailbox.tasks.isEmpty() ? null : mailbox)
+          != null);
+    }
+  }
+
+  private static final class Job<T> {
+    private final Callable<T> task;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+
+    Job(Callable<T> task) {
+      this.task = task;
+    }
+
+    void run() {
+      try {
+        result.complete(task.call());
+      } catch (Throwable e) {
+        result.completeExceptionally(e);
+      }
+    }
+  }
+}
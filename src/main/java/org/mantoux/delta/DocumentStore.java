@@ -0,0 +1,241 @@
+package org.mantoux.delta;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * Stores a document in a directory as snapshots and logs of changes.
+ *
+ * <p>Every change is appended as a JSON line to the current log segment. Every {@code
+ * snapshotInterval} revisions, the document is written to a snapshot and a new segment is started,
+ * older snapshots and segments being deleted. Opening the store reads the latest snapshot and
+ * replays the changes logged after it, a last line cut by a crash being dropped.
+ *
+ * <p>Files are named after revisions: {@code snapshot-<revision>.json} holds the document at that
+ * revision, line {@code i} of {@code log-<revision>.jsonl} the change producing revision {@code
+ * revision + i + 1}. Instances are not thread-safe, see {@link DocumentExecutor} to serialize
+ * the changes of a document.
+ */
+public final class DocumentStore implements Closeable {
+
+  private static final String SNAPSHOT_PREFIX = "snapshot-";
+  private static final String SNAPSHOT_SUFFIX = ".json";
+  private static final String LOG_PREFIX = "log-";
+  private static final String LOG_SUFFIX = ".jsonl";
+
+  private final Path directory;
+  private final int snapshotInterval;
+  private final DeltaDocument document;
+  private int revision;
+  private int snapshotRevision;
+  private FileChannel log;
+
+  private DocumentStore(
+      Path directory, int snapshotInterval, DeltaDocument document, int revision, int snapshot) {
+    this.directory = directory;
+    this.snapshotInterval = snapshotInterval;
+    this.document = document;
+    this.revision = revision;
+    this.snapshotRevision = snapshot;
+  }
+
+  /**
+   * Opens the store of a directory, creating an empty document if there is none
+   *
+   * @param directory the directory of the document
+   * @param snapshotInterval number of revisions between two snapshots
+   * @return the store, holding the latest revision of the document
+   */
+  public static DocumentStore open(Path directory, int snapshotInterval) throws IOException {
+    if (snapshotInterval <= 0)
+      throw new IllegalArgumentException("Snapshot interval should be greater than 0");
+    Files.createDirectories(directory);
+    final TreeMap<Integer, Path> snapshots = new TreeMap<>();
+    final TreeMap<Integer, Path> segments = new TreeMap<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        final String name = file.getFileName().toString();
+        final Integer snapshot = revisionOf(name, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        if (snapshot != null) snapshots.put(snapshot, file);
+        final Integer segment = revisionOf(name, LOG_PREFIX, LOG_SUFFIX);
+        if (segment != null) segments.put(segment, file);
+      }
+    }
+
+    final int snapshot = snapshots.isEmpty() ? 0 : snapshots.lastKey();
+    final Delta snapshotDocument =
+        snapshots.isEmpty()
+            ? new Delta()
+            : DeltaJson.readDelta(Files.readAllBytes(snapshots.lastEntry().getValue()));
+    final DeltaDocument document = new DeltaDocument(snapshotDocument);
+    int revision = snapshot;
+    int segmentEnd = -1;
+    // Segments left by a crash before compaction may hold changes older than the snapshot
+    for (var segment : segments.entrySet()) {
+      final boolean last = segment.getKey().equals(segments.lastKey());
+      segmentEnd = replay(segment.getValue(), segment.getKey(), revision, document, last);
+      revision = Math.max(revision, segmentEnd);
+    }
+    final DocumentStore store =
+        new DocumentStore(directory, snapshotInterval, document, revision, snapshot);
+    // The last segment is appended to if it ends at the latest revision, a new one started if not
+    final int first = segmentEnd == revision ? segments.lastKey() : revision;
+    store.log = openSegment(directory.resolve(LOG_PREFIX + first + LOG_SUFFIX));
+    return store;
+  }
+
+  public int revision() {
+    return revision;
+  }
+
+  /**
+   * @return a copy of the document at the latest revision
+   */
+  public Delta document() {
+    return document.toDelta();
+  }
+
+  /**
+   * Logs a change, then applies it to the document
+   *
+   * @param change a change of the document at the latest revision
+   * @return the revision produced by the change
+   */
+  public int append(Delta change) throws IOException {
+    // Validated before logging, a logged change must apply when replayed
+    document.check(change);
+    final byte[] json = DeltaJson.toJsonBytes(change);
+    final ByteBuffer line = ByteBuffer.allocate(json.length + 1).put(json).put((byte) '\n');
+    line.flip();
+    final long size = log.size();
+    try {
+      while (line.hasRemaining()) log.write(line);
+    } catch (IOException | RuntimeException e) {
+      // A partial line would be replayed as garbage followed by the next change
+      try {
+        log.truncate(size);
+      } catch (IOException truncateFailure) {
+        // The log cannot be appended to anymore, reopening the store drops the partial line
+        e.addSuppressed(truncateFailure);
+        try {
+          log.close();
+        } catch (IOException closeFailure) {
+          e.addSuppressed(closeFailure);
+        }
+      }
+      throw e;
+    }
+    document.apply(change);
+    revision += 1;
+    if (revision - snapshotRevision >= snapshotInterval) snapshot();
+    return revision;
+  }
+
+  /** Forces the logged changes to the storage device. */
+  public void sync() throws IOException {
+    log.force(false);
+  }
+
+  /**
+   * Writes a snapshot of the latest revision, then starts a new log segment and deletes the older
+   * snapshots and segments
+   */
+  public void snapshot() throws IOException {
+    if (revision == snapshotRevision) return;
+    final Path snapshot = directory.resolve(SNAPSHOT_PREFIX + revision + SNAPSHOT_SUFFIX);
+    final Path temporary = directory.resolve(snapshot.getFileName() + ".tmp");
+    try (FileChannel channel =
+        FileChannel.open(
+            temporary,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      final ByteBuffer json = ByteBuffer.wrap(DeltaJson.toJsonBytes(document.toDelta()));
+      while (json.hasRemaining()) channel.write(json);
+      channel.force(true);
+    }
+    // Readers only ever see a complete snapshot
+    Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE);
+
+    log.force(false);
+    log.close();
+    log = openSegment(directory.resolve(LOG_PREFIX + revision + LOG_SUFFIX));
+    snapshotRevision = revision;
+    deleteBefore(revision);
+  }
+
+  @Override
+  public void close() throws IOException {
+    log.force(false);
+    log.close();
+  }
+
+  // Applies the changes of a segment after the current revision, returns the revision of its end
+  private static int replay(
+      Path segment, int firstRevision, int revision, DeltaDocument document, boolean last)
+      throws IOException {
+    final byte[] bytes = Files.readAllBytes(segment);
+    int lineRevision = firstRevision;
+    int start = 0;
+    for (int end = indexOf(bytes, start); end >= 0; end = indexOf(bytes, start)) {
+      lineRevision += 1;
+      if (lineRevision > revision) {
+        if (lineRevision != revision + 1)
+          throw new IOException("Missing revisions before " + lineRevision + " in " + segment);
+        document.apply(DeltaJson.readDelta(Arrays.copyOfRange(bytes, start, end)));
+        revision = lineRevision;
+      }
+      start = end + 1;
+    }
+    if (start < bytes.length) {
+      // A line without newline is a change cut by a crash, never acknowledged
+      if (!last) throw new IOException("Truncated change in " + segment);
+      try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+        channel.truncate(start);
+      }
+    }
+    return lineRevision;
+  }
+
+  private static int indexOf(byte[] bytes, int from) {
+    for (int i = from; i < bytes.length; i++) {
+      if (bytes[i] == '\n') return i;
+    }
+    return -1;
+  }
+
+  private static FileChannel openSegment(Path segment) throws IOException {
+    return FileChannel.open(
+        segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  private void deleteBefore(int revision) throws IOException {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        final String name = file.getFileName().toString();
+        final Integer snapshot = revisionOf(name, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        final Integer segment = revisionOf(name, LOG_PREFIX, LOG_SUFFIX);
+        if ((snapshot != null && snapshot < revision) || (segment != null && segment < revision))
+          Files.delete(file);
+      }
+    }
+  }
+
+  private static Integer revisionOf(String name, String prefix, String suffix) {
+    if (!name.startsWith(prefix) || !name.endsWith(suffix)) return null;
+    try {
+      return Integer.parseInt(name.substring(prefix.length(), name.length() - suffix.length()));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,177 @@
+package org.mantoux.delta;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Read-only {@link AttributeMap}, safe to share between ops and threads.
+ *
+ * <p>Maps holding only scalar values (strings, numbers, booleans or {@code null}) are interned:
+ * equal maps passed to {@link #intern(Map)} give back the same canonical instance, so comparing
+ * them is a reference check in the common case. The hash code is computed once.
+ */
+public final class ImmutableAttributeMap extends AttributeMap {
+
+  // Bounds the memory held by the pool when documents use many distinct attribute values
+  private static final int POOL_CAPACITY = 4096;
+  private static final Map<AttributeMap, ImmutableAttributeMap> POOL = new ConcurrentHashMap<>();
+
+  private final int hash;
+
+  private ImmutableAttributeMap(Map<String, Object> attributes) {
+    super(attributes);
+    this.hash = super.hashCode();
+  }
+
+  /**
+   * @param attributes the attributes to freeze
+   * @return an immutable map equal to {@code attributes}, {@code null} if it is {@code null}
+   */
+  public static ImmutableAttributeMap intern(Map<String, Object> attributes) {
+    if (attributes == null) return null;
+    if (attributes instanceof ImmutableAttributeMap immutable) return immutable;
+    if (!isInternable(attributes)) return new ImmutableAttributeMap(attributes);
+    final ImmutableAttributeMap canonical = POOL.get(attributes);
+    if (canonical != null) return canonical;
+    final ImmutableAttributeMap created = new ImmutableAttributeMap(attributes);
+    if (POOL.size() >= POOL_CAPACITY) return created;
+    final ImmutableAttributeMap previous = POOL.putIfAbsent(created, created);
+    return previous != null ? previous : created;
+  }
+
+  private static boolean isInternable(Map<String, Object> attributes) {
+    for (Object value : attributes.values()) {
+      if (value != null
+          && !(value instanceof String)
+          && !(value instanceof Boolean)
+          && !(value instanceof Integer)
+          && !(value instanceof Long)
+          && !(value instanceof Double)) return false;
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return this == o || super.equals(o);
+  }
+
+  @Override
+  public Set<String> keySet() {
+    return Collections.unmodifiableSet(super.keySet());
+  }
+
+  @Override
+  public Collection<Object> values() {
+    return Collections.unmodifiableCollection(super.values());
+  }
+
+  // Entries are copied as they are iterated, Entry.setValue would otherwise write through
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    final Set<Entry<String, Object>> entries = super.entrySet();
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<Entry<String, Object>> iterator() {
+        final Iterator<Entry<String, Object>> iterator = entries.iterator();
+        return new Iterator<>() {
+          @Override
+          public boolean hasNext() {
+            return iterator.hasNext();
+          }
+
+          @Override
+          public Entry<String, Object> next() {
+            return new SimpleImmutableEntry<>(iterator.next());
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return entries.size();
+      }
+    };
+  }
+
+  @Override
+  public Object put(String key, Object value) {
+    throw new UnsupportedOperationException("Attribute map is immutable");
+  }
+
+  @Override
+  public void putAll(Map<? extends String, ?> m) {
+    throw new UnsupportedOperationException("Attribute map is immutable");
+  }
+
+  @Override
+  public Object putIfAbsent(String key, Object value) {
+    throw new UnsupportedOperationException("Attribute map is immutable");
+  }
+
+  @Override
+  public Object remove(Object key) {
+    throw new UnsupportedOperationException("Attribute map is immutable");
+  }
+
+  @Override
+  public boolean remove(Object key, Object value) {
+    throw new UnsupportedOperationException("Attribute map is immutable");
+  }
+
+  @Override
+  public void clear() {
+    throw new UnsupportedOperationException("Attribute map is immutable");
+  }
+
+  @Override
+  public Object replace(String key, Object value) {
+    throw new UnsupportedOperationException("Attribute map is immutable");
+  }
+
+  @Override
+  public boolean replace(String key, Object oldValue, Object newValue) {
+    throw new UnsupportedOperationException("Attribute map is immutable");
+  }
+
+  @Override
+  public void replaceAll(BiFunction<? super String, ? super Object, ?> function) {
+    throw new UnsupportedOperationException("Attribute map is immutable");
+  }
+
+  @Override
+  public Object computeIfAbsent(String key, Function<? super String, ?> mappingFunction) {
+    throw new UnsupportedOperationException("Attribute map is immutable");
+  }
+
+  @Override
+  public Object computeIfPresent(
+      String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+    throw new UnsupportedOperationException("Attribute map is immutable");
+  }
+
+  @Override
+  public Object compute(
+      String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+    throw new UnsupportedOperationException("Attribute map is immutable");
+  }
+
+  @Override
+  public Object merge(
+      String key, Object value, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+    throw new UnsupportedOperationException("Attribute map is immutable");
+  }
+}
@@ -0,0 +1,73 @@
+package org.mantoux.delta;
+
+/**
+ * A line of a document, as streamed by {@link Delta#lines()}: the ops between two newlines and
+ * the attributes of the newline ending it.
+ *
+ * <p>The ops are read from the document on demand, see {@link #delta()}.
+ */
+public final class Line {
+
+  private final Delta document;
+  private final int start;
+  private final int length;
+  private final AttributeMap attributes;
+  // Bounds of the line in the ops of the document, as op indexes and offsets in those ops
+  private final int fromIndex;
+  private final int fromOffset;
+  private final int toIndex;
+  private final int toOffset;
+
+  Line(
+      Delta document,
+      int start,
+      int length,
+      AttributeMap attributes,
+      int fromIndex,
+      int fromOffset,
+      int toIndex,
+      int toOffset) {
+    this.document = document;
+    this.start = start;
+    this.length = length;
+    this.attributes = attributes;
+    this.fromIndex = fromIndex;
+    this.fromOffset = fromOffset;
+    this.toIndex = toIndex;
+    this.toOffset = toOffset;
+  }
+
+  /**
+   * @return a view of the ops of this line, without its newline
+   */
+  public DeltaView delta() {
+    return document.view(fromIndex, fromOffset, toIndex, toOffset);
+  }
+
+  /**
+   * @return the attributes of the newline ending this line, {@code null} for the last line when
+   *     the document does not end with a newline
+   */
+  public AttributeMap attributes() {
+    return attributes;
+  }
+
+  /**
+   * @return the position of the first character of this line in the document
+   */
+  public int start() {
+    return start;
+  }
+
+  /**
+   * @return the length of this line, without its newline
+   */
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public String toString() {
+    return "Line{start=" + start + ", length=" + length + ", attributes=" + attributes + "}";
+  }
+}
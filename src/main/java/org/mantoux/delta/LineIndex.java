@@ -0,0 +1,150 @@
+package org.mantoux.delta;
+
+import java.util.Arrays;
+
+/**
+ * Positions of the newlines of a document, to reach any line in {@code O(log n)}.
+ *
+ * <p>Lines are numbered from 0 and split as by {@link Delta#lines()}. Instances are immutable:
+ * {@link #apply(Delta)} returns the index of the changed document, its newlines being moved along
+ * the change rather than searched again in the text.
+ */
+public final class LineIndex {
+
+  private final Delta document;
+  // Sorted positions of the newlines of the document
+  private final int[] newlines;
+
+  /**
+   * @param document a document, i.e. a delta made of inserts only, copied by the index
+   */
+  public LineIndex(Delta document) {
+    this(new Delta(document), newlines(document));
+  }
+
+  private LineIndex(Delta document, int[] newlines) {
+    this.document = document;
+    this.newlines = newlines;
+  }
+
+  private static int[] newlines(Delta document) {
+    int[] newlines = new int[16];
+    int count = 0;
+    int position = 0;
+    document.checkDocument();
+    for (Op op : document) {
+      if (op.isTextInsert()) {
+        final String text = op.argAsString();
+        for (int i = text.indexOf('\n'); i >= 0; i = text.indexOf('\n', i + 1)) {
+          if (count == newlines.length) newlines = Arrays.copyOf(newlines, count * 2);
+          newlines[count++] = position + i;
+        }
+      }
+      position += op.length();
+    }
+    return Arrays.copyOf(newlines, count);
+  }
+
+  /**
+   * @return a copy of the document
+   */
+  public Delta document() {
+    return new Delta(document);
+  }
+
+  /**
+   * @return the number of lines, a last line without newline included if not empty
+   */
+  public int lineCount() {
+    final int lastEnd = newlines.length == 0 ? 0 : newlines[newlines.length - 1] + 1;
+    return newlines.length + (document.length() > lastEnd ? 1 : 0);
+  }
+
+  /**
+   * @param number the number of a line, from 0
+   * @return the line
+   */
+  public Line line(int number) {
+    if (number < 0 || number >= lineCount())
+      throw new IndexOutOfBoundsException("Line " + number + " out of " + lineCount());
+    final int start = number == 0 ? 0 : newlines[number - 1] + 1;
+    final boolean last = number == newlines.length;
+    final int end = last ? document.length() : newlines[number];
+    final AttributeMap attributes =
+        last ? null : document.get(document.opIndexAt(end)).attributes();
+    final int fromIndex = document.opIndexAt(start);
+    final int toIndex = document.opIndexAt(end);
+    return new Line(
+        document,
+        start,
+        end - start,
+        attributes,
+        fromIndex,
+        start - document.opStart(fromIndex),
+        toIndex,
+        toIndex < document.size() ? end - document.opStart(toIndex) : 0);
+  }
+
+  /**
+   * @param position a position in the document
+   * @return the number of the line holding {@code position}, its newline included
+   */
+  public int lineAt(int position) {
+    if (position < 0 || position >= document.length())
+      throw new IndexOutOfBoundsException("Position " + position + " out of " + document.length());
+    final int found = Arrays.binarySearch(newlines, position);
+    return found >= 0 ? found : -found - 1;
+  }
+
+  /**
+   * Applies a change to the document
+   *
+   * @param change a change that retains or deletes no more than the length of the document
+   * @return the index of the changed document
+   */
+  public LineIndex apply(Delta change) {
+    change.checkAppliesTo(document.length());
+    final Delta changed = document.compose(change);
+
+    // Newlines of retained text are moved, those of deleted text dropped, inserted ones added
+    int[] moved = new int[newlines.length + 16];
+    int count = 0;
+    int next = 0;
+    int position = 0;
+    int shift = 0;
+    for (int i = 0; i < change.size(); i++) {
+      final Op op = change.get(i);
+      final int length = op.length();
+      switch (op.type()) {
+        case RETAIN -> {
+          final int end = position + length;
+          for (; next < newlines.length && newlines[next] < end; next++) {
+            if (count == moved.length) moved = Arrays.copyOf(moved, count * 2);
+            moved[count++] = newlines[next] + shift;
+          }
+          position = end;
+        }
+        case DELETE -> {
+          final int end = position + length;
+          while (next < newlines.length && newlines[next] < end) next++;
+          position = end;
+          shift -= length;
+        }
+        case INSERT -> {
+          if (op.isTextInsert()) {
+            final String text = op.argAsString();
+            for (int j = text.indexOf('\n'); j >= 0; j = text.indexOf('\n', j + 1)) {
+              if (count == moved.length) moved = Arrays.copyOf(moved, count * 2);
+              moved[count++] = position + shift + j;
+            }
+          }
+          shift += length;
+        }
+      }
+    }
+    final int left = newlines.length - next;
+    if (count + left > moved.length) moved = Arrays.copyOf(moved, count + left);
+    for (; next < newlines.length; next++) moved[count++] = newlines[next] + shift;
+    return new LineIndex(changed, Arrays.copyOf(moved, count));
+  }
+}
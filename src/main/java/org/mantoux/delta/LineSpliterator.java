@@ -0,0 +1,112 @@
+package org.mantoux.delta;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Splits the lines of a document between two positions, each starting a line or ending the
+ * document.
+ *
+ * <p>Newlines are searched as lines are requested, from a cursor kept on the ops of the document.
+ * Splitting cuts the range at the first newline after its middle so that both halves hold whole
+ * lines.
+ */
+final class LineSpliterator implements Spliterator<Line> {
+
+  // Ranges shorter than this are not worth handing to another thread
+  private static final int MIN_SPLIT_LENGTH = 1024;
+
+  private final Delta document;
+  private final int end;
+  // Start of the next line, as a position and as an op index with an offset in that op
+  private int position;
+  private int opIndex;
+  private int offset;
+
+  /**
+   * @param document the document, its ops up to {@code end} being inserts
+   * @param position start of the first line
+   * @param end end of the range, after a newline or at the end of the document
+   */
+  LineSpliterator(Delta document, int position, int end) {
+    this.document = document;
+    this.end = end;
+    moveTo(position);
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super Line> action) {
+    if (position >= end) return false;
+    int index = opIndex;
+    int opStart = position - offset;
+    while (opStart < end) {
+      final Op op = document.get(index);
+      final int newline =
+          op.isTextInsert() ? op.argAsString().indexOf('\n', index == opIndex ? offset : 0) : -1;
+      if (newline >= 0) {
+        final int lineEnd = opStart + newline;
+        action.accept(line(lineEnd, index, newline, op.attributes()));
+        position = lineEnd + 1;
+        opIndex = newline + 1 < op.length() ? index : index + 1;
+        offset = newline + 1 < op.length() ? newline + 1 : 0;
+        return true;
+      }
+      opStart += op.length();
+      index += 1;
+    }
+    // Last line of the document, without newline
+    action.accept(line(end, index, 0, null));
+    position = end;
+    return true;
+  }
+
+  @Override
+  public Spliterator<Line> trySplit() {
+    if (end - position < MIN_SPLIT_LENGTH) return null;
+    final int newline = nextNewline(position + (end - position) / 2);
+    if (newline < 0 || newline + 1 >= end) return null;
+    final LineSpliterator prefix = new LineSpliterator(document, position, newline + 1);
+    moveTo(newline + 1);
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    return end - position;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | NONNULL;
+  }
+
+  private Line line(int lineEnd, int endIndex, int endOffset, AttributeMap attributes) {
+    return new Line(
+        document, position, lineEnd - position, attributes, opIndex, offset, endIndex, endOffset);
+  }
+
+  private void moveTo(int position) {
+    this.position = position;
+    opIndex = document.opIndexAt(position);
+    offset = opIndex < document.size() ? position - document.opStart(opIndex) : 0;
+  }
+
+  // Position of the first newline from a position to the end of the range, -1 if there is none
+  private int nextNewline(int from) {
+    final Delta.Iterator it = document.iteratorAt(from);
+    int opStart = from;
+    while (opStart < end && it.hasNext()) {
+      final Op op = it.peek();
+      final int offset = it.peekOffset();
+      if (op.isTextInsert()) {
+        final int index = op.argAsString().indexOf('\n', offset);
+        if (index >= 0) {
+          final int newline = opStart + index - offset;
+          return newline < end ? newline : -1;
+        }
+      }
+      opStart += it.skip(Integer.MAX_VALUE);
+    }
+    return -1;
+  }
+}
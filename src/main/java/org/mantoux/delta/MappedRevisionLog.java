@@ -0,0 +1,339 @@
+package org.mantoux.delta;
+
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of the changes of a document, numbered as revisions, in memory-mapped files.
+ *
+ * <p>Each change is written as a record holding its length, a CRC32C checksum and its JSON. Records
+ * are appended to a segment file mapped in memory, a new segment being started when the current
+ * one is full. The offset of every record is kept in memory, so reading a revision or a range of
+ * revisions is a lookup followed by slicing the mapped files, without copying or a system call.
+ * Opening the log scans the segments to rebuild this index, a last record cut by a crash being
+ * dropped.
+ *
+ * <p>Segments are named after revisions: record {@code i} of {@code segment-<revision>.log} holds
+ * the change producing revision {@code revision + i + 1}. Instances are thread-safe: appends run
+ * one at a time, writing and flushing outside of the lock of the index, which they only hold to
+ * add a record. Reads run concurrently with each other and with appends.
+ */
+public final class MappedRevisionLog implements Closeable {
+
+  static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+  // Length and checksum of a record, a length of 0 marks the end of a segment
+  private static final int HEADER_SIZE = 8;
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".log";
+
+  // Serializes appends, the lock of the index is only held to publish a record
+  private final ReentrantLock appendLock = new ReentrantLock();
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Path directory;
+  private final int segmentSize;
+  private final List<Segment> segments = new ArrayList<>();
+  private int revision;
+  private boolean closed;
+
+  private MappedRevisionLog(Path directory, int segmentSize) {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+  }
+
+  public static MappedRevisionLog open(Path directory) throws IOException {
+    return open(directory, DEFAULT_SEGMENT_SIZE);
+  }
+
+  /**
+   * Opens the log of a directory, creating an empty one if there is none
+   *
+   * @param directory the directory of the log
+   * @param segmentSize size of the segment files, a larger change getting a segment of its own
+   * @return the log, holding all the revisions found in the directory
+   */
+  public static MappedRevisionLog open(Path directory, int segmentSize) throws IOException {
+    if (segmentSize <= HEADER_SIZE)
+      throw new IllegalArgumentException("Segment size should be greater than " + HEADER_SIZE);
+    Files.createDirectories(directory);
+    final TreeMap<Integer, Path> files = new TreeMap<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (Path file : stream) {
+        final Integer base = revisionOf(file.getFileName().toString());
+        if (base != null) files.put(base, file);
+      }
+    }
+
+    final MappedRevisionLog log = new MappedRevisionLog(directory, segmentSize);
+    for (var file : files.entrySet()) {
+      if (file.getKey() != log.revision)
+        throw new IOException("Missing revisions before " + file.getValue());
+      final boolean last = file.getKey().equals(files.lastKey());
+      final Segment segment = Segment.map(file.getValue(), file.getKey(), 0);
+      segment.scan(last);
+      log.segments.add(segment);
+      log.revision += segment.count;
+    }
+    return log;
+  }
+
+  public int revision() {
+    lock.readLock().lock();
+    try {
+      return revision;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Appends a change as the next revision
+   *
+   * @param change the change
+   * @return the revision produced by the change
+   */
+  public int append(Delta change) throws IOException {
+    final byte[] json = DeltaJson.toJsonBytes(change);
+    final CRC32C checksum = new CRC32C();
+    checksum.update(json);
+
+    appendLock.lock();
+    try {
+      checkOpen();
+      // Only appends change the segments, they are read here without the lock of the index
+      final Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+      Segment segment = last;
+      if (segment == null || segment.remaining() < HEADER_SIZE + json.length) {
+        if (segment != null) segment.buffer.force();
+        final Path file = directory.resolve(SEGMENT_PREFIX + revision + SEGMENT_SUFFIX);
+        segment = Segment.map(file, revision, Math.max(segmentSize, HEADER_SIZE + json.length));
+      }
+      // The length is written last, a record is only read back once complete
+      final int offset = segment.end;
+      segment.buffer.putInt(offset + 4, (int) checksum.getValue());
+      segment.buffer.put(offset + HEADER_SIZE, json);
+      segment.buffer.putInt(offset, json.length);
+
+      lock.writeLock().lock();
+      try {
+        if (segment != last) segments.add(segment);
+        segment.add(offset, HEADER_SIZE + json.length);
+        revision += 1;
+        return revision;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  /**
+   * @param revision a revision of the log, greater than 0
+   * @return a read-only view of the JSON of the change producing {@code revision}
+   */
+  public ByteBuffer record(int revision) {
+    lock.readLock().lock();
+    try {
+      checkOpen();
+      checkRange(revision - 1, revision);
+      return slice(revision);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @param fromRevision the revision the changes apply to
+   * @param toRevision the revision the changes lead to
+   * @return read-only views of the JSON of the changes turning {@code fromRevision} into {@code
+   *     toRevision}, in order
+   */
+  public List<ByteBuffer> records(int fromRevision, int toRevision) {
+    lock.readLock().lock();
+    try {
+      checkOpen();
+      checkRange(fromRevision, toRevision);
+      final List<ByteBuffer> records = new ArrayList<>(toRevision - fromRevision);
+      int index = segmentIndex(fromRevision + 1);
+      for (int r = fromRevision + 1; r <= toRevision; r++) {
+        while (r > segments.get(index).base + segments.get(index).count) index += 1;
+        records.add(segments.get(index).slice(r));
+      }
+      return records;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public Delta read(int revision) throws IOException {
+    return decode(record(revision));
+  }
+
+  /**
+   * @param fromRevision the revision the changes apply to
+   * @param toRevision the revision the changes lead to
+   * @return the changes turning {@code fromRevision} into {@code toRevision}, in order
+   */
+  public List<Delta> read(int fromRevision, int toRevision) throws IOException {
+    final List<ByteBuffer> records = records(fromRevision, toRevision);
+    final List<Delta> changes = new ArrayList<>(records.size());
+    for (ByteBuffer record : records) changes.add(decode(record));
+    return changes;
+  }
+
+  /** Forces the appended changes to the storage device, earlier segments being already forced. */
+  public void sync() {
+    final Segment last;
+    lock.readLock().lock();
+    try {
+      checkOpen();
+      last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+    } finally {
+      lock.readLock().unlock();
+    }
+    if (last != null) last.buffer.force();
+  }
+
+  /** Forces the appended changes to the storage device, records read before stay readable. */
+  @Override
+  public void close() {
+    appendLock.lock();
+    try {
+      if (closed) return;
+      lock.writeLock().lock();
+      try {
+        closed = true;
+      } finally {
+        lock.writeLock().unlock();
+      }
+      if (!segments.isEmpty()) segments.get(segments.size() - 1).buffer.force();
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  private static Delta decode(ByteBuffer record) throws IOException {
+    return DeltaJson.readDelta(new ByteBufferBackedInputStream(record));
+  }
+
+  private ByteBuffer slice(int revision) {
+    return segments.get(segmentIndex(revision)).slice(revision);
+  }
+
+  // Index of the segment holding a revision, by binary search on the first revision of segments
+  private int segmentIndex(int revision) {
+    int low = 0;
+    int high = segments.size() - 1;
+    while (low < high) {
+      final int middle = (low + high + 1) >>> 1;
+      if (segments.get(middle).base < revision) low = middle;
+      else high = middle - 1;
+    }
+    return low;
+  }
+
+  private void checkRange(int fromRevision, int toRevision) {
+    if (fromRevision < 0 || toRevision > revision || fromRevision > toRevision)
+      throw new IllegalArgumentException(
+          "Invalid revisions " + fromRevision + " to " + toRevision + ", log ends at " + revision);
+  }
+
+  private void checkOpen() {
+    if (closed) throw new IllegalStateException("Log is closed");
+  }
+
+  private static Integer revisionOf(String name) {
+    if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) return null;
+    try {
+      return Integer.parseInt(
+          name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static final class Segment {
+    private final Path file;
+    // Revision before the first record of the segment
+    private final int base;
+    private final MappedByteBuffer buffer;
+    private int[] offsets = new int[64];
+    private int count;
+    private int end;
+
+    private Segment(Path file, int base, MappedByteBuffer buffer) {
+      this.file = file;
+      this.base = base;
+      this.buffer = buffer;
+    }
+
+    // Maps a segment file, growing it to the given size, the mapping outlives the channel
+    static Segment map(Path file, int base, int size) throws IOException {
+      try (FileChannel channel =
+          FileChannel.open(
+              file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        final long length = Math.max(size, channel.size());
+        if (length > Integer.MAX_VALUE) throw new IOException("Segment too large: " + file);
+        return new Segment(file, base, channel.map(FileChannel.MapMode.READ_WRITE, 0, length));
+      }
+    }
+
+    // Indexes the records of the segment, a last segment being cut at its first invalid record
+    void scan(boolean last) throws IOException {
+      final CRC32C checksum = new CRC32C();
+      while (end + HEADER_SIZE <= buffer.capacity()) {
+        final int length = buffer.getInt(end);
+        if (length == 0) return;
+        final boolean valid =
+            length > 0
+                && length <= buffer.capacity() - end - HEADER_SIZE
+                && checksumOf(checksum, end, length) == buffer.getInt(end + 4);
+        if (!valid) {
+          // A record cut by a crash was never acknowledged, it is erased to be overwritten
+          if (!last) throw new IOException("Corrupted record at " + end + " in " + file);
+          for (int i = end; i < buffer.capacity(); i++) buffer.put(i, (byte) 0);
+          buffer.force();
+          return;
+        }
+        add(end, HEADER_SIZE + length);
+      }
+    }
+
+    private int checksumOf(CRC32C checksum, int offset, int length) {
+      checksum.reset();
+      checksum.update(buffer.slice(offset + HEADER_SIZE, length));
+      return (int) checksum.getValue();
+    }
+
+    int remaining() {
+      return buffer.capacity() - end;
+    }
+
+    void add(int offset, int size) {
+      if (count == offsets.length) offsets = Arrays.copyOf(offsets, count * 2);
+      offsets[count++] = offset;
+      end = offset + size;
+    }
+
+    ByteBuffer slice(int revision) {
+      final int offset = offsets[revision - base - 1];
+      return buffer.slice(offset + HEADER_SIZE, buffer.getInt(offset)).asReadOnlyBuffer();
+    }
+  }
+}
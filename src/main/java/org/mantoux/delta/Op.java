@@ -1,51 +1,45 @@
 package org.mantoux.delta;
 
-import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_EMPTY;
 import static org.mantoux.delta.Op.Type.DELETE;
 import static org.mantoux.delta.Op.Type.RETAIN;
 
-import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.fasterxml.jackson.annotation.JsonInclude;
-import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import java.util.Objects;
 
-@JsonInclude(value = NON_EMPTY)
+@JsonSerialize(using = OpSerializer.class)
 @JsonDeserialize(using = OpDeserializer.class)
 public class Op {
 
   // 0 length white space
-  // placeholder for embedded in diff (no implementation so far)
+  // placeholder for embedded in diff
   static final String EMBED = String.valueOf((char) 0x200b);
 
-  @JsonProperty() private Object insert;
-  @JsonProperty() private Integer delete;
-  @JsonProperty() private Integer retain;
-  @JsonProperty() private AttributeMap attributes;
+  // The type and length are resolved once, lengths are never boxed
+  private final Type type;
+  private final int length;
+  private final Object insert;
+  private final ImmutableAttributeMap attributes;
+
+  private Op(Type type, int length, Object insert, ImmutableAttributeMap attributes) {
+    this.type = type;
+    this.length = length;
+    this.insert = insert;
+    this.attributes = attributes;
+  }
 
   public static Op insert(Object arg) {
-    if (arg instanceof String) {
-      return Op.insert(arg, null);
-    }
-    var newOp = new Op();
-    newOp.insert = arg;
-    return newOp;
+    return Op.insert(arg, null);
   }
 
   public static Op insert(Object arg, AttributeMap attributes) {
-    Op newOp = new Op();
-    if (attributes != null && !attributes.isEmpty()) {
-      if (arg instanceof String) {
-        newOp.attributes = attributes;
-      } else {
-        throw new IllegalArgumentException("Cannot insert object with attributes");
-      }
-    }
-    newOp.insert = arg;
-    return newOp;
+    if (arg == null) throw new IllegalArgumentException("Cannot insert null");
+    if (arg instanceof String text)
+      return new Op(Type.INSERT, text.length(), text, internAttributes(attributes));
+    if (attributes != null && !attributes.isEmpty())
+      throw new IllegalArgumentException("Cannot insert object with attributes");
+    return new Op(Type.INSERT, 1, arg, null);
   }
 
   public static Op retain(int length) {
@@ -54,71 +48,61 @@ public class Op {
 
   public static Op retain(int length, AttributeMap attributes) {
     if (length <= 0) throw new IllegalArgumentException("Length should be greater than 0");
-    Op newOp = new Op();
-    if (attributes != null && !attributes.isEmpty()) newOp.attributes = attributes;
-    newOp.retain = length;
-    return newOp;
+    return new Op(RETAIN, length, null, internAttributes(attributes));
   }
 
   public static Op delete(int length) {
     if (length <= 0) throw new IllegalArgumentException("Length should be greater than 0");
-    Op newOp = new Op();
-    newOp.delete = length;
-    return newOp;
+    return new Op(DELETE, length, null, null);
+  }
+
+  static ImmutableAttributeMap internAttributes(AttributeMap attributes) {
+    if (attributes == null || attributes.isEmpty()) return null;
+    return ImmutableAttributeMap.intern(attributes);
   }
 
   static Op retainUntilEnd() {
     return Op.retain(Integer.MAX_VALUE);
   }
 
-  @JsonIgnore
   public boolean isDelete() {
-    return type().equals(DELETE);
+    return type == DELETE;
   }
 
-  @JsonIgnore
   public boolean isInsert() {
-    return type().equals(Type.INSERT);
+    return type == Type.INSERT;
   }
 
-  @JsonIgnore
   public boolean isTextInsert() {
-    return isInsert() && insert instanceof String;
+    return insert instanceof String;
   }
 
-  @JsonIgnore
   public boolean isRetain() {
-    return type().equals(RETAIN);
+    return type == RETAIN;
   }
 
   public Type type() {
-    if (insert != null) return Type.INSERT;
-    if (delete != null) return DELETE;
-    if (retain != null) return RETAIN;
-    throw new IllegalStateException("Op has no insert, delete or retain");
+    return type;
   }
 
   public Op copy() {
-    return switch (type()) {
-      case RETAIN -> Op.retain(retain, attributes != null ? attributes.copy() : null);
-      case DELETE -> Op.delete(delete);
-      case INSERT -> Op.insert(insert, attributes != null ? attributes.copy() : null);
-    };
+    // Ops are immutable, a copy only matters to callers comparing references
+    return new Op(type, length, insert, attributes);
   }
 
   public int length() {
-    if (type().equals(DELETE)) return delete;
-    if (type().equals(RETAIN)) return retain;
-    return insert instanceof String ? ((String) insert).length() : 1;
+    return length;
   }
 
-  public AttributeMap attributes() {
-    if (type().equals(DELETE)) return null;
-    return attributes != null ? attributes.copy() : null;
+  /**
+   * @return the attributes of this op, shared and immutable, {@code null} if there are none
+   */
+  public ImmutableAttributeMap attributes() {
+    return attributes;
   }
 
   public Object arg() {
-    if (Type.INSERT.equals(type())) return insert;
+    if (type == Type.INSERT) return insert;
     throw new UnsupportedOperationException("Only insert op has an argument");
   }
 
@@ -128,13 +112,12 @@ public class Op {
   }
 
   public boolean hasAttributes() {
-    if (isDelete()) return false;
     return attributes != null;
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(insert, delete, retain, attributes);
+    return Objects.hash(type, length, insert, attributes);
   }
 
   @Override
@@ -142,18 +125,16 @@ public class Op {
     if (this == o) return true;
     if (o == null || getClass() != o.getClass()) return false;
     Op op = (Op) o;
-    return Objects.equals(insert, op.insert)
-        && Objects.equals(delete, op.delete)
-        && Objects.equals(retain, op.retain)
+    return type == op.type
+        && length == op.length
+        && Objects.equals(insert, op.insert)
         && Objects.equals(attributes, op.attributes);
   }
 
   @Override
   public String toString() {
-    ObjectMapper mapper = new ObjectMapper();
-    ObjectWriter writer = mapper.writerWithDefaultPrettyPrinter();
     try {
-      return writer.writeValueAsString(this);
+      return DeltaJson.toPrettyJson(this);
     } catch (JsonProcessingException e) {
       return "Error while generating json:\n" + e.getMessage();
     }
@@ -1,36 +1,97 @@
 package org.mantoux.delta;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.io.IOException;
 import java.util.Map;
 
+/** Builds ops straight from the parser tokens, without going through a JSON tree. */
 public class OpDeserializer extends JsonDeserializer<Op> {
 
+  private static final int INT_COERCIONS =
+      DeserializationFeature.USE_BIG_INTEGER_FOR_INTS.getMask()
+          | DeserializationFeature.USE_LONG_FOR_INTS.getMask();
+
   @Override
-  public Op deserialize(JsonParser jsonParser, DeserializationContext deserializationContext)
-      throws IOException {
-    // Handle attribute only insert
-    var codec = jsonParser.getCodec();
-    var node = (ObjectNode) codec.readTree(jsonParser);
-    AttributeMap map = null;
-    if (node.findValue("attributes") != null) {
-      map = codec.treeToValue(node.findValue("attributes"), AttributeMap.class);
-    }
-    var insertNode = node.findValue("insert");
-    if (insertNode == null || insertNode.isTextual()) {
-      if (insertNode != null) {
-        return Op.insert(insertNode.asText(), map);
-      }
-      var deleteNode = node.findValue("delete");
-      if (deleteNode != null) {
-        return Op.delete(deleteNode.asInt());
+  public Op deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+    JsonToken token = parser.currentToken();
+    if (token == JsonToken.START_OBJECT) token = parser.nextToken();
+
+    Object insert = null;
+    Integer delete = null;
+    Integer retain = null;
+    AttributeMap attributes = null;
+    for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+      final String field = parser.currentName();
+      token = parser.nextToken();
+      switch (field) {
+        case "insert" -> insert = readInsert(parser, context, token);
+        case "delete" -> delete = readLength(parser, context, token);
+        case "retain" -> retain = readLength(parser, context, token);
+        case "attributes" -> attributes = readAttributes(parser, context, token);
+        default -> parser.skipChildren();
       }
-      return Op.retain(node.findValue("retain").asInt(), map);
     }
-    var object = codec.treeToValue(node.get("insert"), Map.class);
-    return Op.insert(object);
+    if (token != JsonToken.END_OBJECT)
+      return (Op) context.handleUnexpectedToken(Op.class, parser);
+
+    if (insert instanceof String text) return Op.insert(text, attributes);
+    if (insert != null) return Op.insert(insert);
+    if (delete != null) return Op.delete(delete);
+    if (retain != null) return Op.retain(retain, attributes);
+    return context.reportInputMismatch(Op.class, "Op has no insert, delete or retain");
+  }
+
+  private static Object readInsert(
+      JsonParser parser, DeserializationContext context, JsonToken token) throws IOException {
+    return switch (token) {
+      case VALUE_STRING -> parser.getText();
+      case VALUE_NULL -> null;
+      case START_OBJECT -> context.readValue(parser, Map.class);
+      default -> context.handleUnexpectedToken(Object.class, parser);
+    };
+  }
+
+  private static Integer readLength(
+      JsonParser parser, DeserializationContext context, JsonToken token) throws IOException {
+    if (token == JsonToken.VALUE_NUMBER_INT) return parser.getIntValue();
+    if (token == JsonToken.VALUE_NULL) return null;
+    return (Integer) context.handleUnexpectedToken(Integer.class, parser);
+  }
+
+  private static AttributeMap readAttributes(
+      JsonParser parser, DeserializationContext context, JsonToken token) throws IOException {
+    if (token == JsonToken.VALUE_NULL) return null;
+    if (token != JsonToken.START_OBJECT)
+      return (AttributeMap) context.handleUnexpectedToken(AttributeMap.class, parser);
+    final AttributeMap attributes = new AttributeMap();
+    for (token = parser.nextToken(); token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+      final String key = parser.currentName();
+      attributes.put(key, readValue(parser, context, parser.nextToken()));
+    }
+    return attributes;
+  }
+
+  // Same types as Jackson's untyped deserialization, scalars are read without its help
+  private static Object readValue(
+      JsonParser parser, DeserializationContext context, JsonToken token) throws IOException {
+    return switch (token) {
+      case VALUE_STRING -> parser.getText();
+      case VALUE_TRUE -> Boolean.TRUE;
+      case VALUE_FALSE -> Boolean.FALSE;
+      case VALUE_NULL -> null;
+      case VALUE_NUMBER_INT ->
+          context.hasSomeOfFeatures(INT_COERCIONS)
+              ? context.readValue(parser, Object.class)
+              : parser.getNumberValue();
+      case VALUE_NUMBER_FLOAT ->
+          context.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+              ? parser.getDecimalValue()
+              : parser.getDoubleValue();
+      default -> context.readValue(parser, Object.class);
+    };
   }
 }
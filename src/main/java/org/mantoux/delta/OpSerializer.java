@@ -0,0 +1,48 @@
+package org.mantoux.delta;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import java.io.IOException;
+import java.util.Map;
+
+/** Writes ops straight to the generator, the counterpart of {@link OpDeserializer}. */
+public class OpSerializer extends JsonSerializer<Op> {
+
+  @Override
+  public void serialize(Op op, JsonGenerator generator, SerializerProvider provider)
+      throws IOException {
+    generator.writeStartObject(op);
+    switch (op.type()) {
+      case INSERT -> {
+        generator.writeFieldName("insert");
+        if (op.isTextInsert()) generator.writeString(op.argAsString());
+        else provider.defaultSerializeValue(op.arg(), generator);
+      }
+      case DELETE -> generator.writeNumberField("delete", op.length());
+      case RETAIN -> generator.writeNumberField("retain", op.length());
+    }
+    final AttributeMap attributes = op.attributes();
+    if (attributes != null && !attributes.isEmpty()) {
+      generator.writeFieldName("attributes");
+      generator.writeStartObject(attributes);
+      for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+        generator.writeFieldName(entry.getKey());
+        writeValue(entry.getValue(), generator, provider);
+      }
+      generator.writeEndObject();
+    }
+    generator.writeEndObject();
+  }
+
+  private static void writeValue(Object value, JsonGenerator generator, SerializerProvider provider)
+      throws IOException {
+    if (value == null) generator.writeNull();
+    else if (value instanceof String string) generator.writeString(string);
+    else if (value instanceof Boolean bool) generator.writeBoolean(bool);
+    else if (value instanceof Integer integer) generator.writeNumber(integer);
+    else if (value instanceof Long number) generator.writeNumber(number);
+    else if (value instanceof Double number) generator.writeNumber(number);
+    else provider.defaultSerializeValue(value, generator);
+  }
+}
@@ -0,0 +1,14 @@
+package org.mantoux.delta;
+
+/**
+ * Receives the ops produced by a streaming operation, such as {@link Delta#compose(
+ * java.util.Iterator, java.util.Iterator, OpSink)}, one at a time and in order.
+ *
+ * <p>{@code delta::add} collects them in a {@link Delta}. Sinks writing to a stream or a file
+ * report I/O failures as unchecked exceptions, which abort the operation.
+ */
+@FunctionalInterface
+public interface OpSink {
+
+  void accept(Op op);
+}
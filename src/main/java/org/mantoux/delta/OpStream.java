@@ -0,0 +1,65 @@
+package org.mantoux.delta;
+
+import java.util.Iterator;
+
+/**
+ * Cursor over a stream of ops, with the same contract as {@link Delta.Iterator}: ops can be taken
+ * in parts, and an exhausted stream yields retains of {@link Integer#MAX_VALUE}.
+ *
+ * <p>Only the current op is held, the source is read one op at a time.
+ */
+final class OpStream {
+
+  private final Iterator<Op> ops;
+  private Op op;
+  private int offset;
+
+  OpStream(Iterator<Op> ops) {
+    this.ops = ops;
+    advance();
+  }
+
+  boolean hasNext() {
+    return op != null;
+  }
+
+  Op.Type peekType() {
+    return op == null ? Op.Type.RETAIN : op.type();
+  }
+
+  int peekLength() {
+    return op == null ? Integer.MAX_VALUE : op.length() - offset;
+  }
+
+  Op next() {
+    return next(Integer.MAX_VALUE);
+  }
+
+  Op next(int length) {
+    if (op == null) return Op.retainUntilEnd();
+    final Op current = op;
+    final int offset = this.offset;
+    final int left = current.length() - offset;
+    if (length >= left) {
+      advance();
+      if (offset == 0) return current;
+      length = left;
+    } else {
+      this.offset += length;
+    }
+    return switch (current.type()) {
+      case DELETE -> Op.delete(length);
+      case RETAIN -> Op.retain(length, current.attributes());
+      case INSERT ->
+          current.isTextInsert()
+              ? Op.insert(
+                  current.argAsString().substring(offset, offset + length), current.attributes())
+              : current;
+    };
+  }
+
+  private void advance() {
+    op = ops.hasNext() ? ops.next() : null;
+    offset = 0;
+  }
+}
@@ -0,0 +1,109 @@
+package org.mantoux.delta;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A document edited by several clients, each change being numbered as a revision.
+ *
+ * <p>Clients submit changes made on the revision they last saw. A change is transformed against
+ * the revisions committed since, then composed into the document as the next revision. Committed
+ * changes take priority over later ones when inserting at the same position.
+ *
+ * <p>Instances are thread-safe, each holding its own lock so that documents are edited
+ * independently. Transforming against most of the missed revisions happens outside the lock,
+ * which only covers the revisions committed meanwhile and the composition.
+ */
+public final class OtSession {
+
+  private final ReentrantLock lock = new ReentrantLock();
+  // Committed changes, the one at index i turned revision i into revision i + 1
+  private final List<Delta> history = new ArrayList<>();
+  private volatile Snapshot current;
+
+  /**
+   * @param document the document at revision 0, made of inserts only
+   */
+  public OtSession(Delta document) {
+    document.checkDocument();
+    current = new Snapshot(0, new Delta(document));
+  }
+
+  /**
+   * Commits a change as the next revision
+   *
+   * @param baseRevision the revision the change was made on
+   * @param change the change
+   * @return the committed revision, its change transformed to apply to the previous revision
+   */
+  public Revision submit(int baseRevision, Delta change) {
+    final List<Delta> missed = committedSince(baseRevision);
+    // Copied as it is kept in the history, the caller may reuse its delta
+    Delta transformed = new Delta(change);
+    for (Delta committed : missed) transformed = committed.transform(transformed, true);
+
+    lock.lock();
+    try {
+      for (int i = baseRevision + missed.size(); i < history.size(); i++) {
+        transformed = history.get(i).transform(transformed, true);
+      }
+      final Delta document = current.document();
+      transformed.checkAppliesTo(document.length());
+      final Delta composed = document.compose(transformed);
+      history.add(transformed);
+      current = new Snapshot(history.size(), composed);
+      return new Revision(history.size(), new Delta(transformed));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int revision() {
+    return current.revision();
+  }
+
+  /**
+   * @return the current revision with a copy of the document
+   */
+  public Snapshot snapshot() {
+    final Snapshot snapshot = current;
+    return new Snapshot(snapshot.revision(), new Delta(snapshot.document()));
+  }
+
+  /**
+   * @param revision a revision, at most the current one
+   * @return copies of the changes committed after {@code revision}, in order
+   */
+  public List<Delta> changesSince(int revision) {
+    final List<Delta> committed = committedSince(revision);
+    final List<Delta> changes = new ArrayList<>(committed.size());
+    for (Delta change : committed) changes.add(new Delta(change));
+    return changes;
+  }
+
+  // Committed changes are never modified, they are shared rather than copied under the lock
+  private List<Delta> committedSince(int revision) {
+    lock.lock();
+    try {
+      if (revision < 0 || revision > history.size())
+        throw new IllegalArgumentException(
+            "Unknown revision " + revision + ", current revision is " + history.size());
+      return List.copyOf(history.subList(revision, history.size()));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param number the number of the revision
+   * @param change the change that turned the previous revision into this one
+   */
+  public record Revision(int number, Delta change) {}
+
+  /**
+   * @param revision the number of the revision
+   * @param document the document at that revision
+   */
+  public record Snapshot(int revision, Delta document) {}
+}
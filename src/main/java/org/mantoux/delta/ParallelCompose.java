@@ -0,0 +1,100 @@
+package org.mantoux.delta;
+
+import static org.mantoux.delta.Op.Type.DELETE;
+import static org.mantoux.delta.Op.Type.INSERT;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Composes two deltas by chunks: both are cut at the same positions of the document {@code other}
+ * applies to, chunks are composed in parallel and the results joined with {@link Delta#push(Op)}
+ * so that ops on both sides of a cut still merge.
+ */
+final class ParallelCompose {
+
+  // Smallest number of ops of the first delta worth composing as a separate chunk
+  static final int MIN_CHUNK_OPS = 4096;
+
+  private ParallelCompose() {}
+
+  static Delta compose(Delta delta, Delta other, ForkJoinPool pool) {
+    // Cutting & joining cost a pass over both deltas, only worth it with several workers
+    final int parallelism = pool.getParallelism();
+    final int chunkCount =
+        parallelism < 2 ? 0 : Math.min(4 * parallelism, delta.size() / MIN_CHUNK_OPS);
+    final int[] boundaries = boundaries(delta, chunkCount);
+    if (boundaries.length == 0) return delta.compose(other);
+
+    final List<Delta> chunks = split(delta, boundaries, DELETE);
+    final List<Delta> otherChunks = split(other, boundaries, INSERT);
+    final List<ForkJoinTask<Delta>> tasks = new ArrayList<>(chunks.size());
+    for (int i = 0; i < chunks.size(); i++) {
+      final Delta chunk = chunks.get(i);
+      final Delta otherChunk = otherChunks.get(i);
+      // Trailing retains are only dropped once all chunks are joined
+      tasks.add(
+          ForkJoinTask.adapt(
+              () -> otherChunk.isEmpty() ? chunk : chunk.compose(otherChunk, false)));
+    }
+    pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+
+    final Delta composed = new Delta();
+    for (ForkJoinTask<Delta> task : tasks) {
+      final Delta result = task.join();
+      for (int i = 0; i < result.size(); i++) composed.push(result.get(i));
+    }
+    return composed.chop();
+  }
+
+  // Positions of the document other applies to, i.e. after inserts and retains of delta, evenly
+  // spaced in ops of delta
+  private static int[] boundaries(Delta delta, int chunkCount) {
+    if (chunkCount < 2) return new int[0];
+    final int[] boundaries = new int[chunkCount - 1];
+    int count = 0;
+    int position = 0;
+    int nextOp = delta.size() / chunkCount;
+    for (int i = 0; i < delta.size() && count < boundaries.length; i++) {
+      if (i == nextOp) {
+        if (position > 0 && (count == 0 || boundaries[count - 1] < position))
+          boundaries[count++] = position;
+        nextOp = (int) ((long) (count + 1) * delta.size() / chunkCount);
+      }
+      final Op op = delta.get(i);
+      if (!op.isDelete()) position += op.length();
+    }
+    return Arrays.copyOf(boundaries, count);
+  }
+
+  /**
+   * @param delta the delta to cut
+   * @param boundaries positions at which to cut
+   * @param uncounted ops of this type are not counted in positions, they go to the chunk after
+   * @return {@code boundaries.length + 1} chunks
+   */
+  private static List<Delta> split(Delta delta, int[] boundaries, Op.Type uncounted) {
+    final List<Delta> chunks = new ArrayList<>(boundaries.length + 1);
+    final Delta.Iterator it = delta.iterator();
+    int position = 0;
+    for (int boundary : boundaries) {
+      final Delta chunk = new Delta();
+      while (it.hasNext() && position < boundary) {
+        if (it.peekType() == uncounted) chunk.add(it.next());
+        else {
+          final Op op = it.next(boundary - position);
+          chunk.add(op);
+          position += op.length();
+        }
+      }
+      chunks.add(chunk);
+    }
+    final Delta last = new Delta();
+    while (it.hasNext()) last.add(it.next());
+    chunks.add(last);
+    return chunks;
+  }
+}
@@ -0,0 +1,36 @@
+package org.mantoux.delta;
+
+/**
+ * Applies the merging rules of {@link Delta#push(Op)} to a stream of ops before handing them to a
+ * sink.
+ *
+ * <p>A push only ever changes the last op, or moves an insert before a trailing delete, so only
+ * the last two ops are held back. {@link #close()} drops a trailing plain retain like {@link
+ * Delta#chop()} and passes on the rest.
+ */
+final class PushingSink {
+
+  private final OpSink sink;
+  private final Delta pending = new Delta();
+
+  PushingSink(OpSink sink) {
+    this.sink = sink;
+  }
+
+  void push(Op op) {
+    pending.push(op);
+    // Ops before the last two can no longer change
+    if (pending.size() > 2) sink.accept(pending.remove(0));
+  }
+
+  // The last op pushed, possibly merged with previous ones
+  Op last() {
+    return pending.getLast();
+  }
+
+  void close() {
+    pending.chop();
+    for (int i = 0; i < pending.size(); i++) sink.accept(pending.get(i));
+    pending.clear();
+  }
+}
@@ -194,4 +194,53 @@ class AttributeMapTest {
           AttributeMap.of("color", "blue"), AttributeMap.diff(format, override));
     }
   }
+
+  @Nested
+  public class Immutable {
+
+    @Test
+    public void internEqualMaps() {
+      var a = ImmutableAttributeMap.intern(AttributeMap.of("bold", true, "color", "red"));
+      var b = ImmutableAttributeMap.intern(AttributeMap.of("color", "red", "bold", true));
+      Assertions.assertSame(a, b);
+      Assertions.assertEquals(AttributeMap.of("bold", true, "color", "red"), a);
+      Assertions.assertEquals(
+          AttributeMap.of("bold", true, "color", "red").hashCode(), a.hashCode());
+    }
+
+    @Test
+    public void rejectModification() {
+      var attributes = ImmutableAttributeMap.intern(AttributeMap.of("bold", true));
+      Assertions.assertThrows(UnsupportedOperationException.class, () -> attributes.put("a", 1));
+      Assertions.assertThrows(UnsupportedOperationException.class, () -> attributes.remove("bold"));
+      Assertions.assertThrows(
+          UnsupportedOperationException.class, () -> attributes.entrySet().clear());
+      var entry = attributes.entrySet().iterator().next();
+      Assertions.assertThrows(UnsupportedOperationException.class, () -> entry.setValue(false));
+      Assertions.assertThrows(
+          UnsupportedOperationException.class, () -> attributes.putIfAbsent("a", 1));
+      Assertions.assertThrows(
+          UnsupportedOperationException.class, () -> attributes.replaceAll((k, v) -> v));
+      Assertions.assertThrows(
+          UnsupportedOperationException.class, () -> attributes.merge("bold", 1, (a, b) -> b));
+      Assertions.assertThrows(
+          UnsupportedOperationException.class, () -> attributes.compute("bold", (k, v) -> v));
+      // The interned map was left untouched
+      Assertions.assertSame(
+          attributes, ImmutableAttributeMap.intern(AttributeMap.of("bold", true)));
+      var copy = attributes.copy();
+      copy.put("a", 1);
+      Assertions.assertEquals(AttributeMap.of("bold", true, "a", 1), copy);
+    }
+
+    @Test
+    public void opSharesAttributes() {
+      var attributes = AttributeMap.of("bold", true);
+      var op = Op.insert("a", attributes);
+      attributes.put("italic", true);
+      Assertions.assertEquals(AttributeMap.of("bold", true), op.attributes());
+      Assertions.assertSame(
+          op.attributes(), Op.retain(1, AttributeMap.of("bold", true)).attributes());
+    }
+  }
 }
@@ -2,8 +2,11 @@ package org.mantoux.delta;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mantoux.delta.AttributeMap.of;
 import static org.mantoux.delta.Op.EMBED;
 
+import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -202,6 +205,21 @@ class DeltaBuilderTest {
       assertEquals(Op.delete(5), delta.getFirst());
     }
 
+    @Test
+    public void pushInsertsAfterDelete() {
+      var delta = new Delta().delete(2);
+      delta.push(Op.insert("a"));
+      delta.push(Op.insert(Map.of("image", "x")));
+      delta.push(Op.insert("b", AttributeMap.of("bold", true)));
+      delta.push(Op.insert("c", AttributeMap.of("bold", true)));
+      var expected = new Delta();
+      expected.add(Op.insert("a"));
+      expected.add(Op.insert(Map.of("image", "x")));
+      expected.add(Op.insert("bc", AttributeMap.of("bold", true)));
+      expected.add(Op.delete(2));
+      assertEquals(expected, delta);
+    }
+
     @Test
     public void pushConsecutiveText() {
       var delta = new Delta().insert("a");
@@ -247,4 +265,68 @@ class DeltaBuilderTest {
       assertEquals(2, delta.size());
     }
   }
+
+  @Nested
+  public class Builder {
+    @Test
+    public void typing() {
+      var builder = Delta.builder();
+      var expected = new Delta();
+      for (char c : "Hello world".toCharArray()) {
+        builder.insert(String.valueOf(c));
+        expected.insert(String.valueOf(c));
+      }
+      assertEquals(expected, builder.build());
+      assertEquals(1, expected.size());
+    }
+
+    @Test
+    public void insertAfterDelete() {
+      var delta =
+          Delta.builder().insert("a").delete(1).insert("b").delete(2).insert(Map.of("image", "x"));
+      var expected = new Delta().insert("ab").insert(Map.of("image", "x")).delete(3);
+      assertEquals(expected, delta.build());
+    }
+
+    @Test
+    public void attributesChange() {
+      var delta =
+          Delta.builder()
+              .insert("a", of("bold", true))
+              .insert("b", of("bold", true))
+              .insert("c")
+              .retain(2, of("italic", true))
+              .retain(1, of("italic", true))
+              .insert("d", new AttributeMap())
+              .build();
+      var expected =
+          new Delta().insert("ab", of("bold", true)).insert("c").retain(3, of("italic", true));
+      expected.insert("d");
+      assertEquals(expected, delta);
+    }
+
+    @Test
+    public void samePushes() {
+      var random = new RandomDeltas(3);
+      for (int i = 0; i < 100; i++) {
+        var ops = random.change(50);
+        ops.addAll(random.change(20));
+        var builder = Delta.builder();
+        var expected = new Delta();
+        for (Op op : ops) {
+          builder.push(op);
+          expected.push(op);
+        }
+        assertEquals(expected, builder.build());
+      }
+    }
+
+    @Test
+    public void built() {
+      var builder = Delta.builder().insert("a");
+      builder.build();
+      assertThrows(IllegalStateException.class, () -> builder.insert("b"));
+      assertThrows(IllegalStateException.class, builder::build);
+    }
+  }
 }
@@ -0,0 +1,135 @@
+package org.mantoux.delta;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mantoux.delta.AttributeMap.of;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Binary codec")
+class DeltaCodecTest {
+
+  @Test
+  public void roundTrip() throws IOException {
+    var attributes = new AttributeMap();
+    attributes.put("bold", true);
+    attributes.put("italic", false);
+    attributes.put("color", "#ccc");
+    attributes.put("header", 2);
+    attributes.put("size", 12.5);
+    attributes.put("id", 1L << 40);
+    attributes.put("indent", -3);
+    attributes.put("link", null);
+    attributes.put("list", Map.of("type", "ordered"));
+    attributes.put("big", new BigInteger("123456789012345678901234567890"));
+    var delta =
+        new Delta()
+            .retain(1033, attributes)
+            .insert("Gandalf", of("bold", true))
+            .insert(Map.of("image", "octocat.png"))
+            .insert("né 😀 \uD800 \uDC00 日本")
+            .delete(12)
+            .retain(Integer.MAX_VALUE - 2);
+    var encoded = new DeltaCodec.Encoder().encode(delta);
+    var decoded = new DeltaCodec.Decoder().decode(encoded);
+    assertEquals(delta, decoded);
+    assertEquals(0, encoded.remaining());
+  }
+
+  @Test
+  public void dictionary() throws IOException {
+    var encoder = new DeltaCodec.Encoder();
+    var decoder = new DeltaCodec.Decoder();
+    var change = new Delta().retain(5, of("bold", true)).insert("a", of("color", "#ccc"));
+    var first = encoder.encode(change);
+    var second = encoder.encode(change);
+    // Attributes already sent are referred to by id
+    assertTrue(second.remaining() < first.remaining());
+    assertEquals(change, decoder.decode(first));
+    assertEquals(change, decoder.decode(second));
+  }
+
+  @Test
+  public void stream() throws IOException {
+    var random = new RandomDeltas(4);
+    var encoder = new DeltaCodec.Encoder();
+    var buffer = ByteBuffer.allocate(1 << 16);
+    var document = new Delta().insert("Hello world\n");
+    var changes = new ArrayList<Delta>();
+    for (int i = 0; i < 100; i++) {
+      var change = random.change(document.length());
+      changes.add(change);
+      document = document.compose(change);
+      encoder.encode(change, buffer);
+    }
+    buffer.flip();
+    var decoder = new DeltaCodec.Decoder();
+    for (var change : changes) assertEquals(change, decoder.decode(buffer));
+    assertEquals(0, buffer.remaining());
+  }
+
+  @Test
+  public void overflow() throws IOException {
+    var encoder = new DeltaCodec.Encoder();
+    var change = new Delta().insert("Hello", of("bold", true));
+    var buffer = ByteBuffer.allocate(4);
+    assertThrows(BufferOverflowException.class, () -> encoder.encode(change, buffer));
+    assertEquals(0, buffer.position());
+    // The attributes of the failed delta are written again
+    assertEquals(change, new DeltaCodec.Decoder().decode(encoder.encode(change)));
+  }
+
+  @Test
+  public void failedEncoding() throws IOException {
+    var encoder = new DeltaCodec.Encoder();
+    var decoder = new DeltaCodec.Decoder();
+    var buffer = ByteBuffer.allocate(256);
+    // The attributes are numbered before the embed fails to serialize
+    var unserializable =
+        new Delta().insert("Hello", of("bold", true)).insert(Map.of("image", new Object()));
+    assertThrows(IOException.class, () -> encoder.encode(unserializable, buffer));
+    assertEquals(0, buffer.position());
+    var change = new Delta().insert("Hello", of("bold", true));
+    encoder.encode(change, buffer);
+    assertEquals(change, decoder.decode(buffer.flip()));
+  }
+
+  @Test
+  public void smallerThanJson() throws IOException {
+    var change = new Delta();
+    for (int i = 0; i < 100; i++) change.retain(1000 + i).retain(3, of("bold", true));
+    var binary = new DeltaCodec.Encoder().encode(change).remaining();
+    var json = DeltaJson.toJsonBytes(change).length;
+    assertTrue(binary * 5 < json, binary + " bytes, JSON has " + json);
+  }
+
+  @Test
+  public void invalidInput() {
+    var decoder = new DeltaCodec.Decoder();
+    // One retain referring to attributes that were never sent
+    var unknown = ByteBuffer.wrap(new byte[] {1, 4 << 2 | 2, 7});
+    assertThrows(IOException.class, () -> decoder.decode(unknown));
+    var truncated = ByteBuffer.wrap(new byte[] {1, 10 << 2, 'a'});
+    assertThrows(BufferUnderflowException.class, () -> decoder.decode(truncated));
+    // One embed claiming 2 GB of JSON
+    var embed = ByteBuffer.wrap(new byte[] {1, 1, -1, -1, -1, -1, 7});
+    assertThrows(BufferUnderflowException.class, () -> decoder.decode(embed));
+  }
+
+  @Test
+  public void emptyDelta() throws IOException {
+    var encoded = new DeltaCodec.Encoder().encode(new Delta());
+    assertEquals(1, encoded.remaining());
+    assertEquals(List.of(), new DeltaCodec.Decoder().decode(encoded));
+  }
+}
@@ -4,6 +4,13 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mantoux.delta.AttributeMap.of;
 import static org.mantoux.delta.Op.EMBED;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -222,4 +229,111 @@ public class DeltaComposeTest {
             .insert("F");
     assertEquals(expected, a.compose(b));
   }
+
+  @Test
+  public void composeAllEmpty() {
+    assertEquals(new Delta(), Delta.composeAll(List.of()));
+  }
+
+  @Test
+  public void composeAllSingle() {
+    var a = new Delta().insert("A").retain(2);
+    assertEquals(a, Delta.composeAll(List.of(a)));
+  }
+
+  @Test
+  public void composeAllHistory() {
+    var random = new RandomDeltas(11);
+    var history = new ArrayList<Delta>();
+    history.add(new Delta().insert("Hello world\n"));
+    var expected = history.getFirst();
+    for (int i = 0; i < 1000; i++) {
+      var change = random.change(expected.length());
+      history.add(change);
+      expected = expected.compose(change);
+    }
+    var copy = history.stream().map(Delta::new).toList();
+    assertEquals(expected, Delta.composeAll(history));
+    assertEquals(copy, history);
+  }
+
+  @Test
+  public void parallelComposeSmall() {
+    var a = new Delta().insert("Hello", of("bold", true)).insert(" world");
+    var b = new Delta().retain(5).delete(1).insert("!");
+    assertEquals(a.compose(b), a.parallelCompose(b));
+  }
+
+  @Test
+  public void parallelComposeLarge() {
+    var random = new Random(5);
+    var document = new Delta();
+    for (int i = 0; i < 10 * ParallelCompose.MIN_CHUNK_OPS; i++) {
+      var text = "ab" + (char) ('a' + random.nextInt(26));
+      document.insert(text, i % 2 == 0 ? of("bold", true) : null);
+    }
+    var change = denseChange(random, document.length(), true);
+    var pool = new ForkJoinPool(4);
+    try {
+      assertEquals(document.compose(change), document.parallelCompose(change, pool));
+      // Both deltas have deletes & inserts, embeds are left out as they cannot take attributes
+      var first = denseChange(random, document.length(), false);
+      var second = denseChange(random, document.compose(first).length(), false);
+      assertEquals(first.compose(second), first.parallelCompose(second, pool));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void composeStreams() {
+    var random = new RandomDeltas(17);
+    var document = new Delta().insert(random.text(100));
+    for (int i = 0; i < 200; i++) {
+      var change = random.change(document.length());
+      var other = random.change(document.compose(change).length());
+      var composed = new Delta();
+      Delta.compose(change.iterator(), other.iterator(), composed::add);
+      assertEquals(change.compose(other), composed);
+      composed = new Delta();
+      Delta.compose(document.iterator(), change.iterator(), composed::add);
+      assertEquals(document.compose(change), composed);
+      document = composed;
+    }
+  }
+
+  @Test
+  public void composeJsonStreams() throws IOException {
+    var a = new Delta().insert("Hello", of("bold", true)).insert(" world");
+    var b = new Delta().retain(5, of("bold", null)).delete(1).insert("!");
+    var composed = new Delta();
+    try (var ops = DeltaJson.readOps(new ByteArrayInputStream(DeltaJson.toJsonBytes(a)));
+        var otherOps = DeltaJson.readOps(new ByteArrayInputStream(DeltaJson.toJsonBytes(b)))) {
+      Delta.compose(ops, otherOps, composed::add);
+    }
+    assertEquals(a.compose(b), composed);
+  }
+
+  private static Delta denseChange(Random random, int length, boolean embeds) {
+    var change = new Delta();
+    int index = 0;
+    while (index < length) {
+      var opLength = Math.min(length - index, 1 + random.nextInt(4));
+      switch (random.nextInt(embeds ? 5 : 4)) {
+        case 0 -> change.retain(opLength);
+        case 1 -> change.retain(opLength, of("italic", random.nextBoolean() ? true : null));
+        case 2 -> change.delete(opLength);
+        case 3 -> {
+          change.insert("xy", random.nextBoolean() ? of("bold", true) : null);
+          opLength = 0;
+        }
+        default -> {
+          change.insert(Map.of("image", "cat.png"));
+          opLength = 0;
+        }
+      }
+      index += opLength;
+    }
+    return change;
+  }
 }
@@ -0,0 +1,116 @@
+package org.mantoux.delta;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mantoux.delta.AttributeMap.of;
+
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Delta diffing")
+public class DeltaDiffTest {
+
+  @Test
+  public void insert() {
+    var a = new Delta().insert("A");
+    var b = new Delta().insert("AB");
+    assertEquals(new Delta().retain(1).insert("B"), a.diff(b));
+  }
+
+  @Test
+  public void delete() {
+    var a = new Delta().insert("AB");
+    var b = new Delta().insert("A");
+    assertEquals(new Delta().retain(1).delete(1), a.diff(b));
+  }
+
+  @Test
+  public void retain() {
+    var a = new Delta().insert("A");
+    var b = new Delta().insert("A");
+    assertEquals(new Delta(), a.diff(b));
+  }
+
+  @Test
+  public void format() {
+    var a = new Delta().insert("A");
+    var b = new Delta().insert("A", of("bold", true));
+    assertEquals(new Delta().retain(1, of("bold", true)), a.diff(b));
+  }
+
+  @Test
+  public void embedMatch() {
+    var a = new Delta().insert(Map.of("image", "https://quilljs.com"));
+    var b = new Delta().insert(Map.of("image", "https://quilljs.com"));
+    assertEquals(new Delta(), a.diff(b));
+  }
+
+  @Test
+  public void embedMismatch() {
+    var a = new Delta().insert(Map.of("image", "https://quilljs.com"));
+    var b = new Delta().insert(Map.of("image", "https://github.com"));
+    var expected = new Delta().insert(Map.of("image", "https://github.com")).delete(1);
+    assertEquals(expected, a.diff(b));
+  }
+
+  @Test
+  public void embedAgainstPlaceholderText() {
+    var a = new Delta().insert(Op.EMBED);
+    var b = new Delta().insert(Map.of("image", "https://github.com"));
+    var expected = new Delta().insert(Map.of("image", "https://github.com")).delete(1);
+    assertEquals(expected, a.diff(b));
+  }
+
+  @Test
+  public void nonDocument() {
+    var a = new Delta().insert("A");
+    var b = new Delta().retain(1).insert("B");
+    assertThrows(IllegalArgumentException.class, () -> a.diff(b));
+    assertThrows(IllegalStateException.class, () -> b.diff(a));
+  }
+
+  @Test
+  public void inconvenientIndexes() {
+    var a = new Delta().insert("12", of("bold", true)).insert("34", of("italic", true));
+    var b = new Delta().insert("123", of("color", "red"));
+    var expected =
+        new Delta()
+            .retain(2, of("bold", null, "color", "red"))
+            .retain(1, of("italic", null, "color", "red"))
+            .delete(1);
+    assertEquals(expected, a.diff(b));
+  }
+
+  @Test
+  public void combination() {
+    var a = new Delta().insert("Bad", of("color", "red")).insert("cat", of("color", "blue"));
+    var b = new Delta().insert("Good", of("bold", true)).insert("dog", of("italic", true));
+    var expected =
+        new Delta()
+            .insert("Good", of("bold", true))
+            .delete(2)
+            .retain(1, of("italic", true, "color", null))
+            .delete(3)
+            .insert("og", of("italic", true));
+    assertEquals(expected, a.diff(b));
+    assertEquals(b, a.compose(a.diff(b)));
+  }
+
+  @Test
+  public void sameDocument() {
+    var a = new Delta().insert("A");
+    assertEquals(new Delta(), a.diff(a));
+  }
+
+  @Test
+  public void immutability() {
+    var a = new Delta().insert("A");
+    var b = new Delta().insert("A", of("bold", true));
+    var aCopy = new Delta(a);
+    var bCopy = new Delta(b);
+    a.diff(b);
+    assertEquals(aCopy, a);
+    assertEquals(bCopy, b);
+  }
+}
@@ -0,0 +1,123 @@
+package org.mantoux.delta;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mantoux.delta.AttributeMap.of;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Delta document")
+public class DeltaDocumentTest {
+
+  @Test
+  public void roundTrip() {
+    var delta =
+        new Delta()
+            .insert("Hello", of("bold", true))
+            .insert(" world")
+            .insert(Map.of("image", "https://quilljs.com"))
+            .insert("\n", of("header", 1));
+    var document = new DeltaDocument(delta);
+    assertEquals(delta.length(), document.length());
+    assertEquals(delta, document.toDelta());
+  }
+
+  @Test
+  public void longText() {
+    var text = "a".repeat(DeltaDocument.MAX_CHUNK_LENGTH * 3 + 7);
+    var delta = new Delta().insert(text, of("bold", true)).insert("\n");
+    var document = new DeltaDocument(delta);
+    assertEquals(delta, document.toDelta());
+    assertEquals(new Delta().insert("aaa", of("bold", true)), document.slice(1500, 1503));
+  }
+
+  @Test
+  public void apply() {
+    var delta = new Delta().insert("Hello", of("bold", true)).insert(" world\n");
+    var change =
+        new Delta()
+            .retain(1)
+            .delete(3)
+            .insert("ey", of("italic", true))
+            .retain(3, of("bold", null, "color", "red"))
+            .insert(Map.of("image", "https://quilljs.com"));
+    var document = new DeltaDocument(delta).apply(change);
+    assertEquals(delta.compose(change), document.toDelta());
+    assertEquals(delta.compose(change).length(), document.length());
+  }
+
+  @Test
+  public void typing() {
+    var document = new DeltaDocument(new Delta().insert("\n"));
+    var expected = new Delta().insert("\n");
+    var text = "The quick brown fox jumps over the lazy dog";
+    for (int i = 0; i < text.length(); i++) {
+      var change = new Delta().retain(i).insert(text.substring(i, i + 1));
+      document.apply(change);
+      expected = expected.compose(change);
+    }
+    assertEquals(expected, document.toDelta());
+  }
+
+  @Test
+  public void randomChanges() {
+    var random = new Random(7);
+    var attributes = List.of(of("bold", true), of("italic", true), of("bold", null));
+    var expected = new Delta().insert("Lorem ipsum dolor sit amet\n");
+    var document = new DeltaDocument(expected);
+    for (int i = 0; i < 500; i++) {
+      var change = new Delta();
+      int index = 0;
+      while (index < expected.length() && random.nextInt(4) != 0) {
+        var length = 1 + random.nextInt(Math.max(1, (expected.length() - index) / 2));
+        switch (random.nextInt(4)) {
+          case 0 -> change.retain(length);
+          case 1 -> change.retain(length, attributes.get(random.nextInt(attributes.size())));
+          case 2 -> change.delete(length);
+          default -> {
+            change.insert("x".repeat(1 + random.nextInt(5)), of("italic", random.nextBoolean()));
+            length = 0;
+          }
+        }
+        index += length;
+      }
+      expected = expected.compose(change);
+      document.apply(change);
+      assertEquals(expected, document.toDelta(), "After change " + i);
+    }
+    var length = expected.length();
+    assertEquals(
+        expected.slice(length / 3, 2 * length / 3), document.slice(length / 3, 2 * length / 3));
+  }
+
+  @Test
+  public void nonDocument() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new DeltaDocument(new Delta().insert("A").retain(1)));
+  }
+
+  @Test
+  public void changeTooLong() {
+    var document = new DeltaDocument(new Delta().insert("ABC"));
+    assertThrows(
+        IllegalArgumentException.class, () -> document.apply(new Delta().retain(2).delete(2)));
+    assertEquals(new Delta().insert("ABC"), document.toDelta());
+  }
+
+  @Test
+  public void formatEmbed() {
+    var initial = new Delta().insert("A").insert(Map.of("image", "a.png")).insert("B");
+    var document = new DeltaDocument(initial);
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> document.apply(new Delta().insert("!").retain(2, of("bold", true))));
+    assertEquals(initial, document.toDelta());
+    document.apply(new Delta().retain(3, of("bold", null)));
+    assertEquals(initial, document.toDelta());
+  }
+}
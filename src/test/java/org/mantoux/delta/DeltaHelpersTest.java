@@ -1,8 +1,14 @@
 package org.mantoux.delta;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mantoux.delta.AttributeMap.of;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -63,4 +69,166 @@ class DeltaHelpersTest {
       assertEquals(delta, delta.chop());
     }
   }
+
+  @Nested
+  public class Length {
+
+    @Test
+    public void length() {
+      var delta = new Delta().insert("AB", of("bold", true)).retain(2).delete(1);
+      assertEquals(5, delta.length());
+      assertEquals(1, delta.changeLength());
+    }
+
+    @Test
+    public void pushes() {
+      var delta = new Delta().delete(2);
+      assertEquals(2, delta.length());
+      delta.insert("ab").delete(1).retain(3).insert("c");
+      assertEquals(9, delta.length());
+      assertEquals(0, delta.changeLength());
+      delta.chop();
+      delta.retain(4);
+      delta.chop();
+      assertEquals(9, delta.length());
+    }
+
+    @Test
+    public void listMutations() {
+      var delta = new Delta().insert("abc").retain(2);
+      assertEquals(5, delta.length());
+      delta.set(1, Op.delete(4));
+      assertEquals(7, delta.length());
+      assertEquals(-1, delta.changeLength());
+      delta.addAll(delta);
+      assertEquals(14, delta.length());
+      delta.remove(0);
+      assertEquals(11, delta.length());
+      delta.removeIf(Op::isInsert);
+      assertEquals(8, delta.length());
+      delta.subList(0, 1).clear();
+      assertEquals(4, delta.length());
+      var it = delta.listIterator();
+      it.next();
+      it.set(Op.retain(1));
+      assertEquals(1, delta.length());
+      delta.clear();
+      assertEquals(0, delta.length());
+    }
+
+    @Test
+    public void copy() {
+      var delta = new Delta(new Delta().insert("abc").delete(2));
+      assertEquals(5, delta.length());
+      assertEquals(1, delta.changeLength());
+    }
+
+    @Test
+    public void removeFirstAndLast() {
+      var delta = new Delta().insert("ab").retain(3).delete(4).retain(5);
+      assertEquals(Op.insert("ab"), delta.removeFirst());
+      assertEquals(12, delta.length());
+      assertEquals(Op.retain(5), delta.removeLast());
+      assertEquals(7, delta.length());
+      assertEquals(-4, delta.changeLength());
+      assertEquals(Op.delete(4), delta.reversed().removeFirst());
+      assertEquals(3, delta.length());
+      delta.clear();
+      assertThrows(NoSuchElementException.class, delta::removeFirst);
+      assertThrows(NoSuchElementException.class, delta::removeLast);
+    }
+
+    @Test
+    public void subListMutations() {
+      var delta = new Delta().insert("abc").retain(2).delete(3);
+      var view = delta.subList(1, 3);
+      view.set(0, Op.retain(5));
+      assertEquals(11, delta.length());
+      view.removeIf(Op::isDelete);
+      assertEquals(8, delta.length());
+      view.replaceAll(op -> Op.delete(1));
+      assertEquals(4, delta.length());
+      assertEquals(2, delta.changeLength());
+      view.add(Op.insert("d"));
+      assertEquals(List.of(Op.insert("abc"), Op.delete(1), Op.insert("d")), delta);
+      assertEquals(5, delta.length());
+    }
+
+    @Test
+    public void concurrentReads() throws Exception {
+      var delta = new Delta();
+      for (int i = 0; i < 20_000; i++) delta.add(i % 2 == 0 ? Op.insert("ab") : Op.retain(3));
+      var pool = Executors.newFixedThreadPool(8);
+      try {
+        var lengths = new ArrayList<Future<Integer>>();
+        for (int i = 0; i < 8; i++) lengths.add(pool.submit(delta::length));
+        for (var length : lengths) assertEquals(50_000, length.get());
+      } finally {
+        pool.shutdown();
+      }
+    }
+  }
+
+  @Nested
+  public class Slice {
+
+    @Test
+    public void start() {
+      var slice = new Delta().retain(2).insert("A").slice(2);
+      assertEquals(new Delta().insert("A"), slice);
+    }
+
+    @Test
+    public void startAndEnd() {
+      var slice = new Delta().retain(2).insert("A", of("bold", true)).insert("B").slice(2, 3);
+      assertEquals(new Delta().insert("A", of("bold", true)), slice);
+    }
+
+    @Test
+    public void splitOps() {
+      var slice = new Delta().insert("AB", of("bold", true)).insert("C").slice(1, 2);
+      assertEquals(new Delta().insert("B", of("bold", true)), slice);
+    }
+
+    @Test
+    public void splitOpsMultiple() {
+      var slice = new Delta().insert("ABC", of("bold", true)).insert("D").slice(1, 4);
+      assertEquals(new Delta().insert("BC", of("bold", true)).insert("D"), slice);
+    }
+
+    @Test
+    public void outOfRange() {
+      var delta = new Delta().insert("ABC").delete(2);
+      assertEquals(new Delta(), delta.slice(5));
+      assertEquals(new Delta(), delta.slice(2, 2));
+      assertEquals(delta, delta.slice(-1, 10));
+    }
+
+    @Test
+    public void afterChange() {
+      var delta = new Delta().insert("AB").retain(2).insert("C", of("bold", true));
+      assertEquals(new Delta().retain(1).insert("C", of("bold", true)), delta.slice(3));
+      delta.set(0, Op.insert("A"));
+      assertEquals(new Delta().insert("C", of("bold", true)), delta.slice(3));
+      delta.insert("DE");
+      assertEquals(new Delta().insert("D"), delta.slice(4, 5));
+    }
+
+    @Test
+    public void sameAsWalk() {
+      var random = new RandomDeltas(8);
+      var delta = new Delta();
+      for (int i = 0; i < 200; i++) delta = delta.concat(random.change(20));
+      var length = delta.length();
+      for (int start = 0; start < length; start += 7) {
+        var expected = new Delta();
+        var it = delta.iterator();
+        for (int skipped = 0; skipped < start; ) skipped += it.skip(start - skipped);
+        while (it.hasNext() && expected.length() < 11) {
+          expected.add(it.next(11 - expected.length()));
+        }
+        assertEquals(expected, delta.slice(start, start + 11));
+      }
+    }
+  }
 }
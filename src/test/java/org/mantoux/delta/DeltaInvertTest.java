@@ -77,4 +77,26 @@ public class DeltaInvertTest {
     assertEquals(expected, inverted);
     assertEquals(base, base.compose(delta).compose(inverted));
   }
+
+  @Test
+  public void randomChanges() {
+    var random = new RandomDeltas(21);
+    var base = new Delta();
+    for (int i = 0; i < 50; i++) base.insert(random.text(10), i % 3 == 0 ? of("bold", true) : null);
+    for (int i = 0; i < 200; i++) {
+      var delta = random.change(base.length());
+      assertEquals(base, base.compose(delta).compose(delta.invert(base)));
+    }
+  }
+
+  @Test
+  public void indexedBase() {
+    var base = new Delta().insert("123", of("bold", true)).insert("456").insert("789");
+    var delta = new Delta().retain(4).delete(3).retain(1, of("italic", true));
+    var expected = delta.invert(base);
+    // Slicing indexes the offsets of base, retains then skip by binary search
+    base.slice(2);
+    assertEquals(expected, delta.invert(base));
+    assertEquals(base, base.compose(delta).compose(expected));
+  }
 }
@@ -0,0 +1,78 @@
+package org.mantoux.delta;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mantoux.delta.AttributeMap.of;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Delta lines")
+class DeltaLinesTest {
+
+  @Test
+  public void lines() {
+    var delta =
+        new Delta()
+            .insert("Hello\n\n")
+            .insert("World", of("bold", true))
+            .insert(Map.of("image", "octocat.png"))
+            .insert("\n", of("align", "right"))
+            .insert("!");
+    var lines = delta.lines().toList();
+    assertEquals(4, lines.size());
+    assertEquals(new Delta().insert("Hello"), lines.get(0).delta());
+    assertNull(lines.get(0).attributes());
+    assertEquals(new Delta(), lines.get(1).delta());
+    assertEquals(
+        new Delta().insert("World", of("bold", true)).insert(Map.of("image", "octocat.png")),
+        lines.get(2).delta());
+    assertEquals(of("align", "right"), lines.get(2).attributes());
+    assertEquals(7, lines.get(2).start());
+    assertEquals(6, lines.get(2).length());
+    assertEquals(new Delta().insert("!"), lines.get(3).delta());
+    assertNull(lines.get(3).attributes());
+  }
+
+  @Test
+  public void trailingNewline() {
+    var lines = new Delta().insert("Hello\nWorld\n").lines().toList();
+    assertEquals(2, lines.size());
+    assertEquals(new Delta().insert("World"), lines.get(1).delta());
+  }
+
+  @Test
+  public void stopsAtNonInsert() {
+    var delta = new Delta().insert("Hello\nWorld").retain(1).insert("!\n");
+    // The interrupted line is dropped, as eachLine does
+    assertEquals(1, delta.lines().count());
+    var lines = new ArrayList<Delta>();
+    delta.eachLine((line, attributes) -> lines.add(line));
+    assertEquals(lines, delta.lines().map(line -> line.delta().toDelta()).toList());
+    assertEquals(0, new Delta().insert("Hello").retain(1).lines().count());
+    assertEquals(0, new Delta().retain(2).lines().count());
+  }
+
+  @Test
+  public void sameAsEachLine() {
+    var random = new RandomDeltas(4);
+    var delta = new Delta();
+    for (int i = 0; i < 20_000; i++) {
+      delta.insert(random.text(6), i % 5 == 0 ? of("header", i % 3) : null);
+    }
+    var expectedLines = new ArrayList<Delta>();
+    var expectedAttributes = new ArrayList<AttributeMap>();
+    delta.eachLine(
+        (line, attributes) -> {
+          expectedLines.add(line);
+          expectedAttributes.add(attributes);
+          return true;
+        });
+    List<Line> lines = delta.lines().parallel().toList();
+    assertEquals(expectedLines, lines.stream().map(line -> line.delta().toDelta()).toList());
+    assertEquals(expectedAttributes, lines.stream().map(Line::attributes).toList());
+  }
+}
@@ -0,0 +1,194 @@
+package org.mantoux.delta;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mantoux.delta.AttributeMap.of;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Delta transforming")
+public class DeltaTransformTest {
+
+  @Test
+  public void insertInsert() {
+    var a = new Delta().insert("A");
+    var b = new Delta().insert("B");
+    assertEquals(new Delta().retain(1).insert("B"), a.transform(b, true));
+    assertEquals(new Delta().insert("B"), a.transform(b, false));
+  }
+
+  @Test
+  public void insertRetain() {
+    var a = new Delta().insert("A");
+    var b = new Delta().retain(1, of("bold", true, "color", "red"));
+    var expected = new Delta().retain(1).retain(1, of("bold", true, "color", "red"));
+    assertEquals(expected, a.transform(b, true));
+  }
+
+  @Test
+  public void insertDelete() {
+    var a = new Delta().insert("A");
+    var b = new Delta().delete(1);
+    assertEquals(new Delta().retain(1).delete(1), a.transform(b, true));
+  }
+
+  @Test
+  public void deleteInsert() {
+    var a = new Delta().delete(1);
+    var b = new Delta().insert("B");
+    assertEquals(new Delta().insert("B"), a.transform(b, true));
+  }
+
+  @Test
+  public void deleteRetain() {
+    var a = new Delta().delete(1);
+    var b = new Delta().retain(1, of("bold", true, "color", "red"));
+    assertEquals(new Delta(), a.transform(b, true));
+  }
+
+  @Test
+  public void deleteDelete() {
+    var a = new Delta().delete(1);
+    var b = new Delta().delete(1);
+    assertEquals(new Delta(), a.transform(b, true));
+  }
+
+  @Test
+  public void retainInsert() {
+    var a = new Delta().retain(1, of("color", "blue"));
+    var b = new Delta().insert("B");
+    assertEquals(new Delta().insert("B"), a.transform(b, true));
+  }
+
+  @Test
+  public void retainRetain() {
+    var a = new Delta().retain(1, of("color", "blue"));
+    var b = new Delta().retain(1, of("bold", true, "color", "red"));
+    assertEquals(new Delta().retain(1, of("bold", true)), a.transform(b, true));
+    assertEquals(new Delta(), b.transform(a, true));
+  }
+
+  @Test
+  public void retainRetainWithoutPriority() {
+    var a = new Delta().retain(1, of("color", "blue"));
+    var b = new Delta().retain(1, of("bold", true, "color", "red"));
+    assertEquals(new Delta().retain(1, of("bold", true, "color", "red")), a.transform(b, false));
+    assertEquals(new Delta().retain(1, of("color", "blue")), b.transform(a, false));
+  }
+
+  @Test
+  public void retainDelete() {
+    var a = new Delta().retain(1, of("color", "blue"));
+    var b = new Delta().delete(1);
+    assertEquals(new Delta().delete(1), a.transform(b, true));
+  }
+
+  @Test
+  public void alternatingEdits() {
+    var a = new Delta().retain(2).insert("si").delete(5);
+    var b = new Delta().retain(1).insert("e").delete(5).insert("ow");
+    var expectedA = new Delta().retain(1).insert("eow").delete(1);
+    var expectedB = new Delta().retain(4).insert("si").delete(1);
+    assertEquals(expectedA, a.transform(b, false));
+    assertEquals(expectedB, b.transform(a, false));
+    var base = new Delta().insert("0123456");
+    assertEquals(base.compose(a).compose(expectedA), base.compose(b).compose(expectedB));
+  }
+
+  @Test
+  public void conflictingAppends() {
+    var a = new Delta().retain(3).insert("aa");
+    var b = new Delta().retain(3).insert("bb");
+    assertEquals(new Delta().retain(5).insert("bb"), a.transform(b, true));
+    assertEquals(new Delta().retain(3).insert("aa"), b.transform(a, false));
+  }
+
+  @Test
+  public void prependAppend() {
+    var a = new Delta().insert("aa");
+    var b = new Delta().retain(3).insert("bb");
+    assertEquals(new Delta().retain(5).insert("bb"), a.transform(b, false));
+    assertEquals(new Delta().insert("aa"), b.transform(a, false));
+  }
+
+  @Test
+  public void trailingDeletesWithDifferingLengths() {
+    var a = new Delta().retain(2).delete(1);
+    var b = new Delta().delete(3);
+    assertEquals(new Delta().delete(2), a.transform(b, false));
+    assertEquals(new Delta(), b.transform(a, false));
+  }
+
+  @Test
+  public void convergence() {
+    var base = new Delta().insert("Hello world\n");
+    var a = new Delta().retain(6).insert("big ", of("bold", true)).delete(5);
+    var b = new Delta().retain(5).insert(",").retain(6, of("italic", true));
+    var left = base.compose(a).compose(a.transform(b, true));
+    var right = base.compose(b).compose(b.transform(a, false));
+    assertEquals(left, right);
+  }
+
+  @Test
+  public void immutability() {
+    var a = new Delta().insert("A");
+    var b = new Delta().insert("B");
+    var aCopy = new Delta(a);
+    var bCopy = new Delta(b);
+    a.transform(b, true);
+    assertEquals(aCopy, a);
+    assertEquals(bCopy, b);
+  }
+
+  @Nested
+  public class TransformPosition {
+
+    @Test
+    public void insertBeforePosition() {
+      assertEquals(3, new Delta().insert("A").transformPosition(2));
+    }
+
+    @Test
+    public void insertAfterPosition() {
+      assertEquals(1, new Delta().retain(2).insert("A").transformPosition(1));
+    }
+
+    @Test
+    public void insertAtPosition() {
+      var delta = new Delta().retain(2).insert("A");
+      assertEquals(2, delta.transformPosition(2, true));
+      assertEquals(3, delta.transformPosition(2, false));
+    }
+
+    @Test
+    public void deleteBeforePosition() {
+      assertEquals(2, new Delta().delete(2).transformPosition(4));
+    }
+
+    @Test
+    public void deleteAfterPosition() {
+      assertEquals(2, new Delta().retain(4).delete(2).transformPosition(2));
+    }
+
+    @Test
+    public void deleteAcrossPosition() {
+      assertEquals(1, new Delta().retain(1).delete(4).transformPosition(2));
+    }
+
+    @Test
+    public void insertAndDeleteBeforePosition() {
+      assertEquals(3, new Delta().retain(2).insert("A").delete(2).transformPosition(4));
+    }
+
+    @Test
+    public void insertBeforeAndDeleteAcrossPosition() {
+      assertEquals(3, new Delta().retain(2).insert("A").delete(4).transformPosition(4));
+    }
+
+    @Test
+    public void deleteBeforeAndDeleteAcrossPosition() {
+      assertEquals(1, new Delta().delete(1).retain(1).delete(4).transformPosition(4));
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package org.mantoux.delta;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mantoux.delta.AttributeMap.of;
+
+import java.util.ConcurrentModificationException;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Delta views")
+class DeltaViewTest {
+
+  private final Delta delta =
+      new Delta()
+          .insert("Hello", of("bold", true))
+          .insert(Map.of("image", "cat.png"))
+          .insert(" world")
+          .retain(3, of("italic", true))
+          .delete(2);
+
+  @Test
+  public void sliceView() {
+    var view = delta.sliceView(2, 9);
+    assertEquals(delta.slice(2, 9), view);
+    assertEquals(delta.slice(2, 9), view.toDelta());
+    assertSame(delta.get(1), view.get(1));
+  }
+
+  @Test
+  public void sliceViewWithinOp() {
+    assertEquals(new Delta().insert("ell", of("bold", true)), delta.sliceView(1, 4));
+    assertEquals(new Delta().insert(" world"), delta.sliceView(6, 12));
+  }
+
+  @Test
+  public void sliceViewOutOfRange() {
+    assertTrue(delta.sliceView(4, 4).isEmpty());
+    assertTrue(delta.sliceView(20, 30).isEmpty());
+    assertEquals(delta, delta.sliceView(-1, 100));
+  }
+
+  @Test
+  public void sameAsSlice() {
+    var length = delta.length();
+    for (int start = 0; start < length; start++) {
+      for (int end = start; end <= length; end++) {
+        assertEquals(delta.slice(start, end), delta.sliceView(start, end));
+      }
+    }
+  }
+
+  @Test
+  public void restView() {
+    var it = delta.iterator();
+    it.skip(2);
+    assertEquals(it.rest(), it.restView());
+    assertEquals(delta.slice(2), it.restView());
+    it.next();
+    assertEquals(delta.subList(1, delta.size()), it.restView());
+  }
+
+  @Test
+  public void readOnly() {
+    var view = delta.sliceView(0, 5);
+    assertThrows(UnsupportedOperationException.class, () -> view.add(Op.retain(1)));
+    assertThrows(UnsupportedOperationException.class, () -> view.remove(0));
+  }
+
+  @Test
+  public void modifiedDelta() {
+    var view = delta.sliceView(0, 5);
+    delta.insert("!");
+    assertThrows(ConcurrentModificationException.class, () -> view.get(0));
+  }
+}
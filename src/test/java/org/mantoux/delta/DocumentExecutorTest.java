@@ -0,0 +1,138 @@
+package org.mantoux.delta;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Document executor")
+class DocumentExecutorTest {
+
+  @Test
+  public void tasksOfADocumentRunInOrder() throws Exception {
+    // Plain maps and lists, only ever touched by the tasks of their own document
+    var documents = new HashMap<Integer, Delta>();
+    var orders = new HashMap<Integer, List<Integer>>();
+    for (int key = 0; key < 8; key++) {
+      documents.put(key, new Delta());
+      orders.put(key, new ArrayList<>());
+    }
+    var documentsView = Map.copyOf(documents);
+    var ordersView = Map.copyOf(orders);
+    var futures = new ArrayList<CompletableFuture<Integer>>();
+    try (var executor = new DocumentExecutor<Integer>()) {
+      for (int i = 0; i < 4000; i++) {
+        final int key = i % 8;
+        final int sequence = i;
+        futures.add(
+            executor.submit(
+                key,
+                () -> {
+                  ordersView.get(key).add(sequence);
+                  var document = documentsView.get(key);
+                  document.insert("a");
+                  return document.length();
+                }));
+      }
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    }
+    for (int key = 0; key < 8; key++) {
+      assertEquals(500, documents.get(key).length());
+      var order = orders.get(key);
+      for (int i = 0; i < order.size(); i++) assertEquals(key + 8 * i, order.get(i));
+    }
+    assertEquals(500, futures.get(4000 - 1).get());
+  }
+
+  @Test
+  public void failedTask() throws Exception {
+    try (var executor = new DocumentExecutor<String>()) {
+      var failed =
+          executor.submit(
+              "doc",
+              () -> {
+                throw new IllegalStateException("failed");
+              });
+      var next = executor.submit("doc", () -> 42);
+      var exception = assertThrows(ExecutionException.class, failed::get);
+      assertEquals(IllegalStateException.class, exception.getCause().getClass());
+      assertEquals(42, next.get());
+    }
+  }
+
+  @Test
+  public void idleDocuments() throws Exception {
+    var executor = new DocumentExecutor<String>();
+    executor.submit("a", () -> 1).get();
+    executor.submit("b", () -> 2).get();
+    executor.close();
+    assertEquals(0, executor.activeDocuments());
+    assertThrows(RejectedExecutionException.class, () -> executor.submit("a", () -> 3));
+  }
+
+  @Test
+  public void callerRunsExecutor() throws Exception {
+    // Runs mailboxes on the submitting thread, which must not be inside compute() then
+    var direct =
+        new AbstractExecutorService() {
+          private boolean shutdown;
+
+          @Override
+          public void execute(Runnable command) {
+            command.run();
+          }
+
+          @Override
+          public void shutdown() {
+            shutdown = true;
+          }
+
+          @Override
+          public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return List.of();
+          }
+
+          @Override
+          public boolean isShutdown() {
+            return shutdown;
+          }
+
+          @Override
+          public boolean isTerminated() {
+            return shutdown;
+          }
+
+          @Override
+          public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return shutdown;
+          }
+        };
+    try (var executor = new DocumentExecutor<String>(direct)) {
+      assertEquals(1, executor.submit("a", () -> 1).get());
+      assertEquals(2, executor.submit("a", () -> 2).get());
+      assertEquals(0, executor.activeDocuments());
+    }
+  }
+
+  @Test
+  public void rejectedMailbox() {
+    var shutdown = Executors.newSingleThreadExecutor();
+    shutdown.shutdown();
+    try (var executor = new DocumentExecutor<String>(shutdown)) {
+      assertThrows(RejectedExecutionException.class, () -> executor.submit("a", () -> 1));
+      assertEquals(0, executor.activeDocuments());
+    }
+  }
+}
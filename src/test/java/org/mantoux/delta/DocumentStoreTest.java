@@ -0,0 +1,96 @@
+package org.mantoux.delta;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("Document store")
+class DocumentStoreTest {
+
+  @TempDir Path directory;
+
+  @Test
+  public void reopen() throws IOException {
+    var random = new RandomDeltas(2);
+    var expected = new Delta();
+    try (var store = DocumentStore.open(directory, 10)) {
+      store.append(new Delta().insert("Hello world\n"));
+      expected = expected.compose(new Delta().insert("Hello world\n"));
+      for (int i = 0; i < 24; i++) {
+        var change = random.change(expected.length());
+        store.append(change);
+        expected = expected.compose(change);
+      }
+      assertEquals(25, store.revision());
+      assertEquals(expected, store.document());
+    }
+    // Only the latest snapshot and the changes after it are kept
+    assertEquals(List.of("log-20.jsonl", "snapshot-20.json"), files());
+    try (var store = DocumentStore.open(directory, 10)) {
+      assertEquals(25, store.revision());
+      assertEquals(expected, store.document());
+      store.append(new Delta().insert("!"));
+    }
+    try (var store = DocumentStore.open(directory, 10)) {
+      assertEquals(26, store.revision());
+      assertEquals(new Delta().insert("!").concat(expected), store.document());
+    }
+  }
+
+  @Test
+  public void truncatedChange() throws IOException {
+    try (var store = DocumentStore.open(directory, 10)) {
+      store.append(new Delta().insert("Hello\n"));
+      store.append(new Delta().retain(5).insert("!"));
+    }
+    var log = directory.resolve("log-0.jsonl");
+    var partial = "{\"ops\":[{\"ins".getBytes(StandardCharsets.UTF_8);
+    Files.write(log, partial, StandardOpenOption.APPEND);
+    try (var store = DocumentStore.open(directory, 10)) {
+      assertEquals(2, store.revision());
+      assertEquals(new Delta().insert("Hello!\n"), store.document());
+      store.append(new Delta().retain(6).insert("?"));
+    }
+    try (var store = DocumentStore.open(directory, 10)) {
+      assertEquals(3, store.revision());
+      assertEquals(new Delta().insert("Hello!?\n"), store.document());
+    }
+  }
+
+  @Test
+  public void invalidChange() throws IOException {
+    try (var store = DocumentStore.open(directory, 10)) {
+      store.append(new Delta().insert("Hello\n"));
+      assertThrows(IllegalArgumentException.class, () -> store.append(new Delta().retain(7)));
+      store.append(new Delta().retain(1).insert(Map.of("image", "a.png")));
+      // Fails to apply on the embed, nothing is logged
+      assertThrows(
+          IllegalArgumentException.class,
+          () -> store.append(new Delta().retain(2, AttributeMap.of("bold", true))));
+      assertEquals(2, store.revision());
+    }
+    try (var store = DocumentStore.open(directory, 10)) {
+      assertEquals(2, store.revision());
+      assertEquals(
+          new Delta().insert("H").insert(Map.of("image", "a.png")).insert("ello\n"),
+          store.document());
+    }
+  }
+
+  private List<String> files() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.map(file -> file.getFileName().toString()).sorted().toList();
+    }
+  }
+}
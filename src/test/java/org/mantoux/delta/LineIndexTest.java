@@ -0,0 +1,95 @@
+package org.mantoux.delta;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mantoux.delta.AttributeMap.of;
+
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Line index")
+class LineIndexTest {
+
+  private final Delta document =
+      new Delta()
+          .insert("Hello\n\n")
+          .insert("World", of("bold", true))
+          .insert(Map.of("image", "octocat.png"))
+          .insert("\n", of("align", "right"))
+          .insert("!");
+
+  @Test
+  public void line() {
+    var index = new LineIndex(document);
+    assertEquals(4, index.lineCount());
+    assertEquals(new Delta().insert("Hello"), index.line(0).delta());
+    assertEquals(new Delta(), index.line(1).delta());
+    var line = index.line(2);
+    assertEquals(
+        new Delta().insert("World", of("bold", true)).insert(Map.of("image", "octocat.png")),
+        line.delta());
+    assertEquals(of("align", "right"), line.attributes());
+    assertEquals(7, line.start());
+    assertEquals(new Delta().insert("!"), index.line(3).delta());
+    assertNull(index.line(3).attributes());
+    assertThrows(IndexOutOfBoundsException.class, () -> index.line(4));
+  }
+
+  @Test
+  public void copiesDocument() {
+    var delta = new Delta().insert("Hello\nWorld");
+    var index = new LineIndex(delta);
+    delta.insert("!\n");
+    index.document().delete(3);
+    assertEquals(2, index.lineCount());
+    assertEquals(new Delta().insert("World"), index.line(1).delta());
+    assertEquals(new Delta().insert("Hello\nWorld"), index.document());
+  }
+
+  @Test
+  public void lineAt() {
+    var index = new LineIndex(document);
+    assertEquals(0, index.lineAt(0));
+    assertEquals(0, index.lineAt(5));
+    assertEquals(1, index.lineAt(6));
+    assertEquals(2, index.lineAt(7));
+    assertEquals(2, index.lineAt(13));
+    assertEquals(3, index.lineAt(14));
+  }
+
+  @Test
+  public void apply() {
+    var index = new LineIndex(document);
+    var change = new Delta().retain(3).delete(4).insert("p\nHey ").retain(6, of("bold", null));
+    var changed = index.apply(change);
+    assertEquals(document.compose(change), changed.document());
+    assertEquals(new Delta().insert("Help"), changed.line(0).delta());
+    assertEquals(
+        new Delta().insert("Hey World").insert(Map.of("image", "octocat.png")),
+        changed.line(1).delta());
+    assertEquals(4, index.lineCount());
+    assertThrows(IllegalArgumentException.class, () -> index.apply(new Delta().retain(20)));
+  }
+
+  @Test
+  public void sameAsLines() {
+    var random = new RandomDeltas(12);
+    var index = new LineIndex(new Delta().insert(random.text(200)));
+    for (int i = 0; i < 300; i++) {
+      index = index.apply(random.change(index.document().length()));
+      var lines = index.document().lines().toList();
+      assertEquals(lines.size(), index.lineCount());
+      for (int n = 0; n < lines.size(); n++) {
+        assertEquals(lines.get(n).delta(), index.line(n).delta());
+        assertEquals(lines.get(n).attributes(), index.line(n).attributes());
+      }
+    }
+  }
+
+  @Test
+  public void nonDocument() {
+    assertThrows(IllegalArgumentException.class, () -> new LineIndex(new Delta().retain(1)));
+  }
+}
@@ -0,0 +1,159 @@
+package org.mantoux.delta;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("Mapped revision log")
+class MappedRevisionLogTest {
+
+  @TempDir Path directory;
+
+  @Test
+  public void appendAndRead() throws IOException {
+    var changes = changes(50);
+    try (var log = MappedRevisionLog.open(directory, 512)) {
+      for (int i = 0; i < changes.size(); i++) assertEquals(i + 1, log.append(changes.get(i)));
+      assertEquals(50, log.revision());
+      assertEquals(changes.get(0), log.read(1));
+      assertEquals(changes.get(49), log.read(50));
+      assertEquals(changes.subList(20, 45), log.read(20, 45));
+      assertEquals(changes, log.read(0, 50));
+      assertEquals(List.of(), log.read(50, 50));
+    }
+    // Changes spread over several segments
+    assertEquals(true, segments().size() > 1);
+  }
+
+  @Test
+  public void records() throws IOException {
+    var change = new Delta().retain(2).insert("é");
+    try (var log = MappedRevisionLog.open(directory)) {
+      log.append(change);
+      var record = log.record(1);
+      assertEquals(true, record.isReadOnly());
+      var bytes = new byte[record.remaining()];
+      record.get(bytes);
+      assertEquals(DeltaJson.toJson(change), new String(bytes, StandardCharsets.UTF_8));
+      assertEquals(1, log.records(0, 1).size());
+    }
+  }
+
+  @Test
+  public void reopen() throws IOException {
+    var changes = changes(40);
+    try (var log = MappedRevisionLog.open(directory, 512)) {
+      for (var change : changes.subList(0, 30)) log.append(change);
+    }
+    try (var log = MappedRevisionLog.open(directory, 512)) {
+      assertEquals(30, log.revision());
+      for (var change : changes.subList(30, 40)) log.append(change);
+    }
+    try (var log = MappedRevisionLog.open(directory, 512)) {
+      assertEquals(40, log.revision());
+      assertEquals(changes, log.read(0, 40));
+    }
+  }
+
+  @Test
+  public void largeChange() throws IOException {
+    var large = new Delta().insert("a".repeat(2000));
+    try (var log = MappedRevisionLog.open(directory, 512)) {
+      log.append(new Delta().insert("Hello"));
+      log.append(large);
+      log.append(new Delta().delete(1));
+      assertEquals(List.of(large, new Delta().delete(1)), log.read(1, 3));
+    }
+  }
+
+  @Test
+  public void corruptedRecord() throws IOException {
+    try (var log = MappedRevisionLog.open(directory, 512)) {
+      log.append(new Delta().insert("Hello"));
+      log.append(new Delta().insert("World"));
+    }
+    // Flips a byte of the last record, as a write cut by a crash would leave it
+    var segment = segments().get(0);
+    try (var channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      var size = DeltaJson.toJsonBytes(new Delta().insert("Hello")).length + 8;
+      channel.write(ByteBuffer.wrap(new byte[] {'x'}), size + 12);
+    }
+    try (var log = MappedRevisionLog.open(directory, 512)) {
+      assertEquals(1, log.revision());
+      log.append(new Delta().insert("!"));
+      assertEquals(List.of(new Delta().insert("Hello"), new Delta().insert("!")), log.read(0, 2));
+    }
+  }
+
+  @Test
+  public void concurrentReads() throws Exception {
+    var changes = changes(200);
+    try (var log = MappedRevisionLog.open(directory, 512)) {
+      var pool = Executors.newFixedThreadPool(4);
+      try {
+        var readers = new ArrayList<Future<?>>();
+        for (int i = 0; i < 4; i++) {
+          readers.add(
+              pool.submit(
+                  () -> {
+                    while (log.revision() < changes.size()) {
+                      var revision = log.revision();
+                      assertEquals(changes.subList(0, revision), log.read(0, revision));
+                      log.sync();
+                    }
+                    return null;
+                  }));
+        }
+        for (var change : changes) log.append(change);
+        for (var reader : readers) reader.get();
+      } finally {
+        pool.shutdown();
+      }
+    }
+  }
+
+  @Test
+  public void invalidRevisions() throws IOException {
+    try (var log = MappedRevisionLog.open(directory)) {
+      log.append(new Delta().insert("Hello"));
+      assertThrows(IllegalArgumentException.class, () -> log.read(0));
+      assertThrows(IllegalArgumentException.class, () -> log.read(2));
+      assertThrows(IllegalArgumentException.class, () -> log.read(1, 0));
+      log.close();
+      assertThrows(IllegalStateException.class, () -> log.read(1));
+    }
+  }
+
+  private static List<Delta> changes(int count) {
+    var random = new RandomDeltas(3);
+    var document = new Delta().insert("Hello world\n");
+    var changes = new ArrayList<Delta>();
+    for (int i = 0; i < count; i++) {
+      var change = random.change(document.length());
+      changes.add(change);
+      document = document.compose(change);
+    }
+    return changes;
+  }
+
+  private List<Path> segments() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.sorted().toList();
+    }
+  }
+}
@@ -2,6 +2,9 @@ package org.mantoux.delta;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mantoux.delta.AttributeMap.of;
 
@@ -36,6 +39,33 @@ class OpTest {
     }
   }
 
+  @Nested
+  public class Equality {
+    @Test
+    public void sameLengthDifferentType() {
+      assertNotEquals(Op.retain(2), Op.delete(2));
+      assertNotEquals(Op.insert("ab"), Op.retain(2));
+    }
+
+    @Test
+    public void emptyAttributes() {
+      assertEquals(Op.retain(2), Op.retain(2, new AttributeMap()));
+      assertNull(Op.insert("ab", new AttributeMap()).attributes());
+    }
+
+    @Test
+    public void copy() {
+      var op = Op.insert("ab", of("bold", true));
+      assertEquals(op, op.copy());
+      assertEquals(op.hashCode(), op.copy().hashCode());
+    }
+
+    @Test
+    public void insertNull() {
+      assertThrows(IllegalArgumentException.class, () -> Op.insert(null));
+    }
+  }
+
   @Nested
   public class iterator {
     Delta delta;
@@ -94,6 +124,23 @@ class OpTest {
       assertEquals(Op.retain(2), it.next(2));
     }
 
+    @Test
+    public void skip() {
+      Delta.Iterator it = delta.iterator();
+      assertEquals(2, it.skip(2));
+      assertEquals(2, it.peekOffset());
+      assertEquals(of("bold", true), it.peekAttributes());
+      assertEquals(3, it.skip(10));
+      assertEquals(0, it.peekOffset());
+      assertEquals(Op.Type.RETAIN, it.peekType());
+      assertEquals(1, it.skip(1));
+      assertEquals(Op.retain(2), it.next());
+      it.skip(1);
+      assertEquals(4, it.skip(4));
+      assertFalse(it.hasNext());
+      assertNull(it.peekAttributes());
+    }
+
     @Test
     public void rest() {
       Delta.Iterator it = delta.iterator();
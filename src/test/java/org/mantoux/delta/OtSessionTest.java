@@ -0,0 +1,88 @@
+package org.mantoux.delta;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("OT session")
+class OtSessionTest {
+
+  @Test
+  public void concurrentInserts() {
+    var session = new OtSession(new Delta().insert("Hello\n"));
+    var first = session.submit(0, new Delta().retain(5).insert(" world"));
+    var second = session.submit(0, new Delta().retain(5).insert("!"));
+    assertEquals(1, first.number());
+    assertEquals(2, second.number());
+    assertEquals(new Delta().retain(11).insert("!"), second.change());
+    assertEquals(new Delta().insert("Hello world!\n"), session.snapshot().document());
+    assertEquals(List.of(second.change()), session.changesSince(1));
+  }
+
+  @Test
+  public void reusedChange() {
+    var session = new OtSession(new Delta().insert("Hello\n"));
+    var change = new Delta().retain(5).insert("!");
+    session.submit(0, change);
+    change.insert("?");
+    assertEquals(List.of(new Delta().retain(5).insert("!")), session.changesSince(0));
+    var second = session.submit(0, new Delta().insert(">"));
+    assertEquals(new Delta().insert(">"), second.change());
+  }
+
+  @Test
+  public void deletedRange() {
+    var session = new OtSession(new Delta().insert("Hello world\n"));
+    session.submit(0, new Delta().retain(5).delete(6));
+    session.submit(0, new Delta().retain(6).retain(5, AttributeMap.of("bold", true)));
+    var snapshot = session.snapshot();
+    assertEquals(2, snapshot.revision());
+    assertEquals(new Delta().insert("Hello\n"), snapshot.document());
+  }
+
+  @Test
+  public void invalidSubmissions() {
+    var session = new OtSession(new Delta().insert("Hello\n"));
+    assertThrows(IllegalArgumentException.class, () -> session.submit(1, new Delta().insert("!")));
+    assertThrows(IllegalArgumentException.class, () -> session.submit(0, new Delta().retain(7)));
+    assertEquals(0, session.revision());
+    assertThrows(IllegalArgumentException.class, () -> new OtSession(new Delta().retain(1)));
+  }
+
+  @Test
+  public void concurrentClients() throws Exception {
+    var initial = new Delta().insert("Hello world\n");
+    var session = new OtSession(initial);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      var futures = new ArrayList<Future<?>>();
+      for (int client = 0; client < 4; client++) {
+        final var random = new RandomDeltas(client);
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < 100; i++) {
+                    var snapshot = session.snapshot();
+                    var change = random.change(snapshot.document().length());
+                    session.submit(snapshot.revision(), change);
+                  }
+                }));
+      }
+      for (var future : futures) future.get();
+    } finally {
+      executor.shutdown();
+    }
+    var snapshot = session.snapshot();
+    assertEquals(400, snapshot.revision());
+    var expected = initial;
+    for (Delta change : session.changesSince(0)) expected = expected.compose(change);
+    assertEquals(expected, snapshot.document());
+  }
+}
@@ -0,0 +1,46 @@
+package org.mantoux.delta;
+
+import static org.mantoux.delta.AttributeMap.of;
+
+import java.util.List;
+import java.util.Random;
+
+/** Reproducible random changes for tests comparing an implementation against compose. */
+class RandomDeltas {
+
+  private static final List<AttributeMap> ATTRIBUTES =
+      List.of(of("bold", true), of("italic", true), of("bold", null), of("header", 1));
+
+  private final Random random;
+
+  RandomDeltas(long seed) {
+    random = new Random(seed);
+  }
+
+  Delta change(int length) {
+    var change = new Delta();
+    int index = 0;
+    while (index < length && random.nextInt(4) != 0) {
+      var opLength = 1 + random.nextInt(Math.max(1, (length - index) / 2));
+      switch (random.nextInt(4)) {
+        case 0 -> change.retain(opLength);
+        case 1 -> change.retain(opLength, ATTRIBUTES.get(random.nextInt(ATTRIBUTES.size())));
+        case 2 -> change.delete(opLength);
+        default -> {
+          change.insert(text(1 + random.nextInt(5)), of("italic", random.nextBoolean()));
+          opLength = 0;
+        }
+      }
+      index += opLength;
+    }
+    return change;
+  }
+
+  String text(int length) {
+    var builder = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      builder.append(random.nextInt(8) == 0 ? '\n' : (char) ('a' + random.nextInt(26)));
+    }
+    return builder.toString();
+  }
+}
@@ -1,8 +1,13 @@
 package org.mantoux.delta;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -105,4 +110,64 @@ public class SerializeTest {
     var exp = new Delta();
     assertEquals(act, exp);
   }
+
+  @Test
+  void serializeDelta() throws Exception {
+    var embed = new HashMap<String, Object>();
+    embed.put("image", "https://quilljs.com");
+    embed.put("alt", null);
+    var delta =
+        new Delta()
+            .retain(3, AttributeMap.of("bold", null))
+            .insert("ab\n", AttributeMap.of("list", List.of(1, 2), "indent", 1.5))
+            .insert(embed)
+            .delete(2);
+    var json =
+        """
+        [{"retain":3,"attributes":{"bold":null}},\
+        {"insert":"ab\\n","attributes":{"indent":1.5,"list":[1,2]}},\
+        {"insert":{"alt":null,"image":"https://quilljs.com"}},\
+        {"delete":2}]""";
+    assertEquals(mapper.readTree(json), mapper.readTree(mapper.writeValueAsString(delta)));
+    assertEquals(delta, mapper.readValue(mapper.writeValueAsString(delta), Delta.class));
+  }
+
+  @Test
+  void deserializeIgnoresUnknownFields() throws Exception {
+    var json =
+        """
+        [
+          {
+            "retain": 2,
+            "extra": { "delete": 4 },
+            "attributes": { "link": { "href": "https://quilljs.com", "target": null } }
+          }
+        ]
+        """;
+    var act = mapper.readValue(json, Delta.class);
+    var link = new HashMap<String, Object>();
+    link.put("href", "https://quilljs.com");
+    link.put("target", null);
+    assertEquals(new Delta().retain(2, AttributeMap.of("link", link)), act);
+  }
+
+  @Test
+  void deserializeOpWithoutType() {
+    assertThrows(MismatchedInputException.class, () -> mapper.readValue("[{}]", Delta.class));
+  }
+
+  @Test
+  void sharedReadersAndWriters() throws Exception {
+    var delta = new Delta().insert("Hello", AttributeMap.of("bold", true)).retain(2).delete(1);
+    var json = DeltaJson.toJson(delta);
+    assertEquals(
+        "[{\"insert\":\"Hello\",\"attributes\":{\"bold\":true}},{\"retain\":2},{\"delete\":1}]",
+        json);
+    assertEquals(delta, DeltaJson.readDelta(json));
+    assertEquals(delta, DeltaJson.readDelta(json.getBytes(StandardCharsets.UTF_8)));
+    assertEquals(Op.retain(2), DeltaJson.readOp("{\"retain\":2}"));
+    assertEquals(AttributeMap.of("bold", true), DeltaJson.readAttributes("{\"bold\":true}"));
+    assertEquals(DeltaJson.toPrettyJson(delta), delta.toString());
+    assertEquals(DeltaJson.toPrettyJson(delta.getFirst()), delta.getFirst().toString());
+  }
 }